@@ -0,0 +1,159 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Compares a JMH CSV result file ({@code -rf csv}) against a checked-in
+ * baseline and exits with a non-zero status when any benchmark regressed by
+ * more than the given tolerance.
+ * <p/>
+ * A score whose error is at least as large as the score itself cannot show a
+ * regression of a few percent, so such rows, in either file, are refused and
+ * fail the comparison as well; record them again with more iterations or
+ * forks. Rows without an error estimate, such as {@code gc.count}, are
+ * event totals rather than scores and are skipped.
+ * <p/>
+ * Usage: {@code BaselineComparison <baseline.csv> <current.csv> [tolerance%]}
+ */
+public final class BaselineComparison {
+
+	private static final double DEFAULT_TOLERANCE = 10.0;
+
+	private BaselineComparison() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("usage: BaselineComparison <baseline.csv> <current.csv> [tolerance%]");
+			System.exit(2);
+		}
+
+		final double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+		final Map<String, Result> baseline = read(args[0]);
+		final Map<String, Result> current = read(args[1]);
+
+		int regressions = 0;
+		int refused = 0;
+		for (Entry<String, Result> e : current.entrySet()) {
+			final Result before = baseline.get(e.getKey());
+			final Result after = e.getValue();
+			if (!after.hasError()) {
+				continue;
+			} else if (!after.isSignificant() || (before != null && !before.isSignificant())) {
+				refused++;
+				final Result noisy = after.isSignificant() ? before : after;
+				System.out.println(String.format("NOISY      %s: %.3f +- %.3f %s in the %s", e.getKey(), noisy.score,
+						noisy.error, noisy.unit, noisy == before ? "baseline" : "current results"));
+				continue;
+			} else if (before == null) {
+				System.out.println(String.format("NEW        %s = %.3f %s", e.getKey(), after.score, after.unit));
+				continue;
+			}
+
+			final double change = (after.score - before.score) / before.score * 100.0;
+			final double worse = after.higherIsBetter() ? -change : change;
+			final String status = worse > tolerance ? "REGRESSED" : "ok";
+			if (worse > tolerance) {
+				regressions++;
+			}
+			System.out.println(String.format("%-10s %s: %.3f -> %.3f %s (%+.1f%%)", status, e.getKey(),
+					before.score, after.score, after.unit, change));
+		}
+
+		if (refused > 0) {
+			System.out.println(refused + " benchmark(s) have an error at least as large as their score");
+		}
+		if (regressions > 0) {
+			System.out.println(regressions + " benchmark(s) regressed by more than " + tolerance + "%");
+		}
+		if (refused > 0 || regressions > 0) {
+			System.exit(1);
+		}
+	}
+
+	private static Map<String, Result> read(String fileName) throws IOException {
+		final Map<String, Result> results = new LinkedHashMap<String, Result>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
+		try {
+			final List<String> header = split(reader.readLine());
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				final List<String> cells = split(line);
+				final StringBuilder key = new StringBuilder(cells.get(header.indexOf("Benchmark")));
+				for (int i = 0; i < header.size(); i++) {
+					if (header.get(i).startsWith("Param: ")) {
+						key.append(' ').append(header.get(i).substring(7)).append('=').append(cells.get(i));
+					}
+				}
+
+				final Result r = new Result(cells.get(header.indexOf("Mode")),
+						Double.parseDouble(cells.get(header.indexOf("Score"))),
+						Double.parseDouble(cells.get(header.indexOf("Score Error (99.9%)"))),
+						cells.get(header.indexOf("Unit")));
+				results.put(key.toString(), r);
+			}
+		} finally {
+			reader.close();
+		}
+		return results;
+	}
+
+	private static List<String> split(String line) {
+		final List<String> cells = new ArrayList<String>();
+		final StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ',' && !quoted) {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else {
+				cell.append(c);
+			}
+		}
+		cells.add(cell.toString());
+		return cells;
+	}
+
+	private static final class Result {
+		final String mode;
+		final double score;
+		final double error;
+		final String unit;
+
+		Result(String mode, double score, double error, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+
+		boolean hasError() {
+			return !Double.isNaN(error);
+		}
+
+		/** Whether the confidence interval of the score excludes zero. */
+		boolean isSignificant() {
+			return error < Math.abs(score);
+		}
+
+		boolean higherIsBetter() {
+			// allocation figures are reported in throughput mode too, but less is better
+			return "thrpt".equals(mode) && unit.endsWith("/s") && !unit.startsWith("MB/") && !unit.startsWith("B/");
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.codegen.ScalaBatchGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates a batch of {@code copies} copies of the corpus grammars with
+ * {@link ScalaBatchGenerator} on a growing number of threads. The time of a
+ * batch on one thread divided by its time on {@code n} threads is the
+ * wall-clock speedup; it levels off at the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchCodeGenerationBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "Scala", "JavaishScala" })
+	public String language;
+
+	@Param({ "8" })
+	public int copies;
+
+	private Path workDir;
+
+	private List<String> grammarFiles;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		workDir = Files.createTempDirectory("scala-batch-bench");
+		grammarFiles = new ArrayList<String>();
+		for (int i = 0; i < copies; i++) {
+			final Path directory = Files.createDirectory(workDir.resolve("copy" + i));
+			for (String grammar : GrammarCorpus.GRAMMARS) {
+				grammarFiles.add(GrammarCorpus.extract(grammar, directory).getAbsolutePath());
+			}
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		GrammarCorpus.delete(workDir);
+	}
+
+	@Benchmark
+	public int generate() throws InterruptedException {
+		int errors = 0;
+		final String[] options = { "-Dlanguage=" + language, "-listener", "-visitor" };
+		for (ScalaBatchGenerator.Result result : ScalaBatchGenerator.generateAll(grammarFiles, options, threads)) {
+			errors += result.getErrors();
+		}
+		if (errors > 0) {
+			throw new IllegalStateException(errors + " errors generating the batch with " + language);
+		}
+		return errors;
+	}
+}
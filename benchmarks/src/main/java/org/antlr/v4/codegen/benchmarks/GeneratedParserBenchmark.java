@@ -0,0 +1,406 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexes and parses large JSON, CSV, expression and SQL inputs with the Scala
+ * lexers and parsers the build generates from the corpus grammars, one
+ * package per template group, and compiles with scalac. Every invocation
+ * builds the complete parse tree. An operation is one token, so the score is
+ * tokens per second and, with {@code -prof gc}, {@code gc.alloc.rate.norm} is
+ * the bytes allocated per token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class GeneratedParserBenchmark {
+
+	static final int JSON_RECORDS = 20000;
+
+	/** {@code [}, the records and the commas between them, {@code ]} and EOF. */
+	static final int JSON_TOKENS = 38 * JSON_RECORDS + 2;
+
+	static final int CSV_ROWS = 80000;
+
+	/** The header, the rows and EOF. */
+	static final int CSV_TOKENS = 9 * CSV_ROWS + 9;
+
+	static final int EXPR_STATEMENTS = 25000;
+
+	/** The pairs of statements and EOF. */
+	static final int EXPR_TOKENS = 28 * EXPR_STATEMENTS + 1;
+
+	static final int SQL_SCRIPTS = 6000;
+
+	/** The groups of four statements and EOF. */
+	static final int SQL_TOKENS = 123 * SQL_SCRIPTS + 1;
+
+	public enum TemplateGroup {
+
+		Scala {
+			@Override
+			Lexer newJsonLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.JsonLexer(input);
+			}
+
+			@Override
+			Parser newJsonParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.JsonParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseJson(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scala.JsonParser) parser).json();
+			}
+
+			@Override
+			Lexer newCsvLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.CsvLexer(input);
+			}
+
+			@Override
+			Parser newCsvParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.CsvParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseCsv(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scala.CsvParser) parser).file();
+			}
+
+			@Override
+			Lexer newExprLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.ExprLexer(input);
+			}
+
+			@Override
+			Parser newExprParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.ExprParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseExpr(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scala.ExprParser) parser).prog();
+			}
+
+			@Override
+			Lexer newSqlLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.SqlLexer(input);
+			}
+
+			@Override
+			Parser newSqlParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scala.SqlParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseSql(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scala.SqlParser) parser).script();
+			}
+		},
+
+		Scalaz {
+			@Override
+			Lexer newJsonLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.JsonLexer(input);
+			}
+
+			@Override
+			Parser newJsonParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.JsonParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseJson(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scalaz.JsonParser) parser).json();
+			}
+
+			@Override
+			Lexer newCsvLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.CsvLexer(input);
+			}
+
+			@Override
+			Parser newCsvParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.CsvParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseCsv(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scalaz.CsvParser) parser).file();
+			}
+
+			@Override
+			Lexer newExprLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.ExprLexer(input);
+			}
+
+			@Override
+			Parser newExprParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.ExprParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseExpr(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scalaz.ExprParser) parser).prog();
+			}
+
+			@Override
+			Lexer newSqlLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.SqlLexer(input);
+			}
+
+			@Override
+			Parser newSqlParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.scalaz.SqlParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseSql(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.scalaz.SqlParser) parser).script();
+			}
+		},
+
+		JavaishScala {
+			@Override
+			Lexer newJsonLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.JsonLexer(input);
+			}
+
+			@Override
+			Parser newJsonParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.JsonParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseJson(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.javaish.JsonParser) parser).json();
+			}
+
+			@Override
+			Lexer newCsvLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.CsvLexer(input);
+			}
+
+			@Override
+			Parser newCsvParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.CsvParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseCsv(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.javaish.CsvParser) parser).file();
+			}
+
+			@Override
+			Lexer newExprLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.ExprLexer(input);
+			}
+
+			@Override
+			Parser newExprParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.ExprParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseExpr(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.javaish.ExprParser) parser).prog();
+			}
+
+			@Override
+			Lexer newSqlLexer(CharStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.SqlLexer(input);
+			}
+
+			@Override
+			Parser newSqlParser(TokenStream input) {
+				return new org.antlr.v4.codegen.benchmarks.javaish.SqlParser(input);
+			}
+
+			@Override
+			ParserRuleContext parseSql(Parser parser) {
+				return ((org.antlr.v4.codegen.benchmarks.javaish.SqlParser) parser).script();
+			}
+		};
+
+		abstract Lexer newJsonLexer(CharStream input);
+
+		abstract Parser newJsonParser(TokenStream input);
+
+		abstract ParserRuleContext parseJson(Parser parser);
+
+		abstract Lexer newCsvLexer(CharStream input);
+
+		abstract Parser newCsvParser(TokenStream input);
+
+		abstract ParserRuleContext parseCsv(Parser parser);
+
+		abstract Lexer newExprLexer(CharStream input);
+
+		abstract Parser newExprParser(TokenStream input);
+
+		abstract ParserRuleContext parseExpr(Parser parser);
+
+		abstract Lexer newSqlLexer(CharStream input);
+
+		abstract Parser newSqlParser(TokenStream input);
+
+		abstract ParserRuleContext parseSql(Parser parser);
+	}
+
+	@Param({ "Scala", "Scalaz", "JavaishScala" })
+	public TemplateGroup language;
+
+	private String json;
+
+	private String csv;
+
+	private String expr;
+
+	private String sql;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		json = jsonInput();
+		csv = csvInput();
+		expr = exprInput();
+		sql = sqlInput();
+		check("Json", language.newJsonLexer(new ANTLRInputStream(json)), JSON_TOKENS);
+		check("Csv", language.newCsvLexer(new ANTLRInputStream(csv)), CSV_TOKENS);
+		check("Expr", language.newExprLexer(new ANTLRInputStream(expr)), EXPR_TOKENS);
+		check("Sql", language.newSqlLexer(new ANTLRInputStream(sql)), SQL_TOKENS);
+
+		final Parser jsonParser = language.newJsonParser(
+				new CommonTokenStream(language.newJsonLexer(new ANTLRInputStream(json))));
+		language.parseJson(jsonParser);
+		final Parser csvParser = language.newCsvParser(
+				new CommonTokenStream(language.newCsvLexer(new ANTLRInputStream(csv))));
+		language.parseCsv(csvParser);
+		final Parser exprParser = language.newExprParser(
+				new CommonTokenStream(language.newExprLexer(new ANTLRInputStream(expr))));
+		language.parseExpr(exprParser);
+		final Parser sqlParser = language.newSqlParser(
+				new CommonTokenStream(language.newSqlLexer(new ANTLRInputStream(sql))));
+		language.parseSql(sqlParser);
+		if (jsonParser.getNumberOfSyntaxErrors() > 0 || csvParser.getNumberOfSyntaxErrors() > 0
+				|| exprParser.getNumberOfSyntaxErrors() > 0 || sqlParser.getNumberOfSyntaxErrors() > 0) {
+			throw new IllegalStateException("The " + language + " parsers reject the benchmark input");
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(JSON_TOKENS)
+	public ParserRuleContext json() {
+		final Lexer lexer = language.newJsonLexer(new ANTLRInputStream(json));
+		return language.parseJson(language.newJsonParser(new CommonTokenStream(lexer)));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CSV_TOKENS)
+	public ParserRuleContext csv() {
+		final Lexer lexer = language.newCsvLexer(new ANTLRInputStream(csv));
+		return language.parseCsv(language.newCsvParser(new CommonTokenStream(lexer)));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(EXPR_TOKENS)
+	public ParserRuleContext expr() {
+		final Lexer lexer = language.newExprLexer(new ANTLRInputStream(expr));
+		return language.parseExpr(language.newExprParser(new CommonTokenStream(lexer)));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SQL_TOKENS)
+	public ParserRuleContext sql() {
+		final Lexer lexer = language.newSqlLexer(new ANTLRInputStream(sql));
+		return language.parseSql(language.newSqlParser(new CommonTokenStream(lexer)));
+	}
+
+	private static void check(String grammar, Lexer lexer, int expected) {
+		final CommonTokenStream tokens = new CommonTokenStream(lexer);
+		tokens.fill();
+		if (tokens.size() != expected) {
+			throw new IllegalStateException(grammar + " input has " + tokens.size() + " tokens, expected " + expected);
+		}
+	}
+
+	/** An array of {@link #JSON_RECORDS} objects of 37 tokens each. */
+	static String jsonInput() {
+		final StringBuilder builder = new StringBuilder("[\n");
+		for (int i = 0; i < JSON_RECORDS; i++) {
+			if (i > 0) {
+				builder.append(",\n");
+			}
+			builder.append("{\"id\": ").append(i)
+					.append(", \"name\": \"item \\u0041").append(i).append('"')
+					.append(", \"price\": ").append(i).append(".25e-1")
+					.append(", \"tags\": [\"a\", \"b\", []]")
+					.append(", \"active\": ").append(i % 2 == 0)
+					.append(", \"parent\": null, \"meta\": {}}");
+		}
+		return builder.append("\n]\n").toString();
+	}
+
+	/** A header of 8 tokens and {@link #CSV_ROWS} rows of 9. */
+	static String csvInput() {
+		final StringBuilder builder = new StringBuilder("id,name,price,note\n");
+		for (int i = 0; i < CSV_ROWS; i++) {
+			builder.append(i).append(",item ").append(i).append(',').append(i).append(".25,")
+					.append(i % 2 == 0 ? "\"say \"\"hi\"\", bye\"" : "plain").append("\r\n");
+		}
+		return builder.toString();
+	}
+
+	/** {@link #EXPR_STATEMENTS} pairs of statements of 28 tokens together. */
+	static String exprInput() {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < EXPR_STATEMENTS; i++) {
+			builder.append('x').append(i).append(" = (a + ").append(i).append(") * -b / f(").append(i)
+					.append(", c % 3) - !d;\n")
+					.append("print x").append(i).append(" + 1;\n");
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * {@link #SQL_SCRIPTS} groups of a select, an insert, an update and a
+	 * delete, 123 tokens together.
+	 */
+	static String sqlInput() {
+		final StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < SQL_SCRIPTS; i++) {
+			builder.append("SELECT DISTINCT o.id, c.name AS customer, sum(o.total * 1.5) total\n")
+					.append("FROM orders o INNER JOIN customers c ON o.customer_id = c.id\n")
+					.append("WHERE o.total >= ").append(i).append(" AND NOT c.name LIKE 'x''%' OR c.id IS NOT NULL\n")
+					.append("ORDER BY total DESC LIMIT 10;\n")
+					.append("INSERT INTO audit.log (id, msg) VALUES (").append(i).append(", 'a'), (1 + 2, NULL);\n")
+					.append("UPDATE items SET price = price / 2 WHERE id IN (1, 2, ").append(i).append(");\n")
+					.append("DELETE FROM sessions WHERE expires < now() AND (TRUE OR FALSE);\n");
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,59 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The fixed set of grammars every benchmark in this module runs against. The
+ * grammars live on the classpath and are copied into a scratch directory
+ * because the ANTLR tool only reads grammars from the file system.
+ */
+public final class GrammarCorpus {
+
+	public static final String[] GRAMMARS = { "Json", "Csv", "Expr", "Sql" };
+
+	public static final String[] LANGUAGES = { "Scala", "Scalaz", "JavaishScala" };
+
+	private static final String RESOURCE_ROOT = "/org/antlr/v4/codegen/benchmarks/grammars/";
+
+	private GrammarCorpus() {
+	}
+
+	public static File extract(String grammarName, Path directory) throws IOException {
+		final String fileName = grammarName + ".g4";
+		final InputStream in = GrammarCorpus.class.getResourceAsStream(RESOURCE_ROOT + fileName);
+		if (in == null) {
+			throw new IllegalArgumentException("Unknown corpus grammar: " + grammarName);
+		}
+
+		try {
+			final Path target = directory.resolve(fileName);
+			Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+			return target.toFile();
+		} finally {
+			in.close();
+		}
+	}
+
+	public static void delete(Path directory) throws IOException {
+		if (directory == null || !Files.exists(directory)) {
+			return;
+		}
+
+		final File[] files = directory.toFile().listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.isDirectory()) {
+					delete(f.toPath());
+				} else {
+					Files.delete(f.toPath());
+				}
+			}
+		}
+		Files.delete(directory);
+	}
+}
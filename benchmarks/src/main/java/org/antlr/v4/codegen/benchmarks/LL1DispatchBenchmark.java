@@ -0,0 +1,173 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.codegen.benchmarks.grammars.SqlParser;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Replays a token stream through the LL(1) decision code the Scala templates
+ * generate, before and after {@code @switch} dispatch and hoisted token sets.
+ * Each variant is the Java equivalent of what scalac emits for it:
+ * <ul>
+ * <li>{@code matchChain}: a match on token {@code val}s that are not
+ * constants, which scalac compiles to a chain of equality tests;</li>
+ * <li>{@code switchTable}: the same match on {@code final val} constants with
+ * {@code @switch}, which becomes a {@code tableswitch};</li>
+ * <li>{@code inlineMasks}: a set test over two 64-bit words with the masks
+ * built from non-constant token values at the test site;</li>
+ * <li>{@code hoistedArray}: the same test as one lookup in a precomputed
+ * {@code Array[Long]}.</li>
+ * </ul>
+ * The decision is the optional suffix of the SQL {@code predicate} rule, with
+ * the token types of {@code SqlParser}. The set is {@code literal} plus five
+ * token types above 63, which the SQL grammar does not reach, so that the set
+ * spans two words as in larger grammars. {@code SQL} replays the corpus
+ * input, {@code WIDE} uniformly spread types below 128. The generated Scala
+ * parsers themselves are measured by {@link GeneratedParserBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LL1DispatchBenchmark {
+
+	/** {@code compareOp} of {@code predicate}: '=', '<>', '<', '<=', '>' and '>='. */
+	private static final String[] COMPARISON_LITERALS = { "'='", "'<>'", "'<'", "'<='", "'>'", "'>='" };
+
+	private static final int[] COMPARISONS = { SqlParser.T__10, SqlParser.T__7, SqlParser.T__11, SqlParser.T__8,
+			SqlParser.T__9, SqlParser.T__13 };
+
+	/** Token values as a Scala companion {@code val} holds them: read, not folded. */
+	static int EQ = COMPARISONS[0], NE = COMPARISONS[1], LT = COMPARISONS[2], LE = COMPARISONS[3],
+			GT = COMPARISONS[4], GE = COMPARISONS[5], IS = SqlParser.IS, IN = SqlParser.IN, LIKE = SqlParser.LIKE,
+			NULL = SqlParser.NULL, TRUE = SqlParser.TRUE, FALSE = SqlParser.FALSE, INT = SqlParser.INT,
+			DECIMAL = SqlParser.DECIMAL, STRING = SqlParser.STRING, W0 = 70, W1 = 75, W2 = 90, W3 = 100, W4 = 127;
+
+	private static final long[] TOKEN_SET = tokenSet();
+
+	public enum Stream {
+		SQL, WIDE
+	}
+
+	@Param({ "SQL", "WIDE" })
+	public Stream stream;
+
+	private int[] types;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		// the implicit token names follow the order of the literals in the grammar
+		for (int i = 0; i < COMPARISONS.length; i++) {
+			if (!COMPARISON_LITERALS[i].equals(SqlParser.tokenNames[COMPARISONS[i]])) {
+				throw new IllegalStateException("SqlParser numbers " + COMPARISON_LITERALS[i] + " differently, found "
+						+ SqlParser.tokenNames[COMPARISONS[i]] + " at " + COMPARISONS[i]);
+			}
+		}
+
+		if (stream == Stream.SQL) {
+			final List<Token> tokens = RecognizerCorpus.SQL.tokens().getTokens();
+			types = new int[tokens.size()];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = tokens.get(i).getType();
+			}
+		} else {
+			final Random random = new Random(42);
+			types = new int[20000];
+			for (int i = 0; i < types.length; i++) {
+				types[i] = random.nextInt(128);
+			}
+		}
+	}
+
+	@Benchmark
+	public int matchChain() {
+		int sum = 0;
+		for (int t : types) {
+			if (t == EQ || t == NE || t == LT || t == LE || t == GT || t == GE) {
+				sum += 1;
+			} else if (t == IS) {
+				sum += 2;
+			} else if (t == IN) {
+				sum += 3;
+			} else if (t == LIKE) {
+				sum += 4;
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int switchTable() {
+		int sum = 0;
+		for (int t : types) {
+			switch (t) {
+			case SqlParser.T__10: case SqlParser.T__7: case SqlParser.T__11:
+			case SqlParser.T__8: case SqlParser.T__9: case SqlParser.T__13:
+				sum += 1;
+				break;
+			case SqlParser.IS:
+				sum += 2;
+				break;
+			case SqlParser.IN:
+				sum += 3;
+				break;
+			case SqlParser.LIKE:
+				sum += 4;
+				break;
+			default:
+				break;
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int inlineMasks() {
+		int sum = 0;
+		for (int t : types) {
+			if ((((t) & ~0x3f) == 0 && ((1L << t) & ((1L << NULL) | (1L << TRUE) | (1L << FALSE) | (1L << INT)
+					| (1L << DECIMAL) | (1L << STRING))) != 0)
+					|| (((t - 64) & ~0x3f) == 0 && ((1L << (t - 64)) & ((1L << (W0 - 64)) | (1L << (W1 - 64))
+							| (1L << (W2 - 64)) | (1L << (W3 - 64)) | (1L << (W4 - 64)))) != 0)) {
+				sum++;
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int hoistedArray() {
+		int sum = 0;
+		for (int t : types) {
+			if ((t >>> 6) < TOKEN_SET.length && (TOKEN_SET[t >>> 6] & (1L << t)) != 0) {
+				sum++;
+			}
+		}
+		return sum;
+	}
+
+	private static long[] tokenSet() {
+		final long[] words = new long[2];
+		for (int t : new int[] { NULL, TRUE, FALSE, INT, DECIMAL, STRING, W0, W1, W2, W3, W4 }) {
+			words[t >>> 6] |= 1L << t;
+		}
+		return words;
+	}
+}
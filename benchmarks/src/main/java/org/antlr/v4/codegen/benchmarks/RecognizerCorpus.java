@@ -0,0 +1,124 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import org.antlr.v4.codegen.benchmarks.grammars.JsonLexer;
+import org.antlr.v4.codegen.benchmarks.grammars.JsonParser;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlLexer;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlParser;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+
+/**
+ * Java recognizers of corpus grammars, generated by the ANTLR Maven plugin,
+ * and a fixed input for each. They drive the benchmarks of runtime mechanisms
+ * the Scala target generates code for.
+ */
+public enum RecognizerCorpus {
+
+	JSON {
+		@Override
+		public Lexer newLexer(String input) {
+			return new JsonLexer(new ANTLRInputStream(input));
+		}
+
+		@Override
+		public Parser newParser(TokenStream input) {
+			return new JsonParser(input);
+		}
+
+		@Override
+		public ParserRuleContext parse(Parser parser) {
+			return ((JsonParser) parser).json();
+		}
+
+		@Override
+		public String serializedATN() {
+			return JsonParser._serializedATN;
+		}
+
+		@Override
+		public String input() {
+			final StringBuilder builder = new StringBuilder("[\n");
+			for (int i = 0; i < 200; i++) {
+				if (i > 0) {
+					builder.append(",\n");
+				}
+				builder.append("{\"id\": ").append(i)
+						.append(", \"name\": \"item \\u0041").append(i).append('"')
+						.append(", \"price\": ").append(i).append(".25e-1")
+						.append(", \"tags\": [\"a\", \"b\", []]")
+						.append(", \"active\": ").append(i % 2 == 0)
+						.append(", \"parent\": null, \"meta\": {}}");
+			}
+			return builder.append("\n]\n").toString();
+		}
+	},
+
+	SQL {
+		@Override
+		public Lexer newLexer(String input) {
+			return new SqlLexer(new ANTLRInputStream(input));
+		}
+
+		@Override
+		public Parser newParser(TokenStream input) {
+			return new SqlParser(input);
+		}
+
+		@Override
+		public ParserRuleContext parse(Parser parser) {
+			return ((SqlParser) parser).script();
+		}
+
+		@Override
+		public String serializedATN() {
+			return SqlParser._serializedATN;
+		}
+
+		@Override
+		public String input() {
+			final StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < 50; i++) {
+				builder.append("SELECT DISTINCT o.id, c.name AS customer, sum(o.total * 1.5) total\n")
+						.append("FROM orders o INNER JOIN customers c ON o.customer_id = c.id\n")
+						.append("LEFT OUTER JOIN regions r ON c.region = r.id\n")
+						.append("WHERE o.total >= ").append(i).append(" AND NOT c.name LIKE 'x''%' OR r.id IS NOT NULL\n")
+						.append("GROUP BY o.id, c.name HAVING count(o.id) > 1 ORDER BY total DESC LIMIT 10 OFFSET ")
+						.append(i).append(";\n");
+				builder.append("INSERT INTO audit.log (id, msg) VALUES (").append(i).append(", 'a'), (1 + 2, NULL);\n");
+				builder.append("UPDATE items SET price = price / 2, name = upper(name) WHERE id IN (1, 2, ").append(i)
+						.append(");\n");
+				builder.append("DELETE FROM sessions WHERE expires < now() AND (TRUE OR FALSE);\n");
+			}
+			return builder.toString();
+		}
+	};
+
+	public abstract Lexer newLexer(String input);
+
+	public abstract Parser newParser(TokenStream input);
+
+	/** Parses with the start rule of the grammar. */
+	public abstract ParserRuleContext parse(Parser parser);
+
+	public abstract String serializedATN();
+
+	public abstract String input();
+
+	/** Deserializes a new, cold copy of the parser ATN. */
+	public ATN newATN() {
+		return ATNSimulator.deserialize(serializedATN().toCharArray());
+	}
+
+	/** Returns the fully buffered tokens of {@link #input()}. */
+	public CommonTokenStream tokens() {
+		final CommonTokenStream tokens = new CommonTokenStream(newLexer(input()));
+		tokens.fill();
+		return tokens;
+	}
+}
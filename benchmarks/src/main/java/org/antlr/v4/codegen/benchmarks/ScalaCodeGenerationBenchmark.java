@@ -0,0 +1,74 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.Tool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the complete ANTLR pipeline (parse, analysis, Scala code generation)
+ * for every corpus grammar and every Scala template group. Run with
+ * {@code -prof gc} to get the allocated bytes per generated grammar next to
+ * the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 10, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class ScalaCodeGenerationBenchmark {
+
+	@Param({ "Json", "Csv", "Expr", "Sql" })
+	public String grammar;
+
+	@Param({ "Scala", "Scalaz", "JavaishScala" })
+	public String language;
+
+	private Path workDir;
+
+	private String grammarFile;
+
+	private String outputDir;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		workDir = Files.createTempDirectory("scala-codegen-bench");
+		final File file = GrammarCorpus.extract(grammar, workDir);
+		grammarFile = file.getAbsolutePath();
+		outputDir = workDir.resolve("out").toString();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		GrammarCorpus.delete(workDir);
+	}
+
+	@Benchmark
+	public int generate() {
+		final Tool tool = new Tool(new String[] { "-Dlanguage=" + language,
+				"-o", outputDir, "-listener", "-visitor", grammarFile });
+		tool.processGrammarsOnCommandLine();
+		if (tool.getNumErrors() > 0) {
+			throw new IllegalStateException(tool.getNumErrors()
+					+ " errors generating " + grammar + " with " + language);
+		}
+		return tool.getNumErrors();
+	}
+}
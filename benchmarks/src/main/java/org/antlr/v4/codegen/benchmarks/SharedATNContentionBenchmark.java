@@ -0,0 +1,75 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.scalaruntime.SharedATN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creates a parser per operation the way generated Scala parsers do, taking
+ * the ATN from a {@link SharedATN}, and parses a fixed input. Run it with
+ * increasing thread counts ({@code -t 1}, {@code -t 4}, {@code -t max}) to
+ * see how global and per-thread sharing scale with the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedATNContentionBenchmark {
+
+	@Param({ "JSON", "SQL" })
+	public RecognizerCorpus grammar;
+
+	@Param({ "GLOBAL", "THREAD" })
+	public SharedATN.Mode sharing;
+
+	private SharedATN sharedATN;
+
+	@State(Scope.Thread)
+	public static class Input {
+
+		private CommonTokenStream tokens;
+
+		@Setup(Level.Trial)
+		public void setup(SharedATNContentionBenchmark benchmark) {
+			tokens = benchmark.grammar.tokens();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		sharedATN = new SharedATN() {
+			@Override
+			protected ATN createATN() {
+				return grammar.newATN();
+			}
+		};
+		sharedATN.setMode(sharing);
+	}
+
+	@Benchmark
+	public ParserRuleContext parse(Input input) {
+		input.tokens.seek(0);
+		final Parser parser = grammar.newParser(input.tokens);
+		parser.setInterpreter(new ParserATNSimulator(parser, sharedATN.get()));
+		return grammar.parse(parser);
+	}
+}
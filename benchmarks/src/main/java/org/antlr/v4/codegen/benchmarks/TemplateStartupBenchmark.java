@@ -0,0 +1,74 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.Tool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the first generation of the smallest corpus grammar in a fresh JVM,
+ * which is what an incremental build pays for every tool launch. With
+ * {@code templates=compiled} the target reads the precompiled template group
+ * shipped in the jar; with {@code source} it parses and compiles the group
+ * file ({@code antlr4.scalaTemplates=source}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class TemplateStartupBenchmark {
+
+	@Param({ "compiled", "source" })
+	public String templates;
+
+	@Param({ "Scala", "Scalaz", "JavaishScala" })
+	public String language;
+
+	private Path workDir;
+
+	private String grammarFile;
+
+	private String outputDir;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		System.setProperty("antlr4.scalaTemplates", templates);
+		workDir = Files.createTempDirectory("scala-startup-bench");
+		final File file = GrammarCorpus.extract("Csv", workDir);
+		grammarFile = file.getAbsolutePath();
+		outputDir = workDir.resolve("out").toString();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		GrammarCorpus.delete(workDir);
+	}
+
+	@Benchmark
+	public int generate() {
+		final Tool tool = new Tool(new String[] { "-Dlanguage=" + language, "-o", outputDir, grammarFile });
+		tool.processGrammarsOnCommandLine();
+		if (tool.getNumErrors() > 0) {
+			throw new IllegalStateException(tool.getNumErrors() + " errors generating Csv with " + language);
+		}
+		return tool.getNumErrors();
+	}
+}
@@ -0,0 +1,121 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.codegen.benchmarks.grammars.JsonParser;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlParser;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.scalaruntime.ArrayTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexes and parses the corpus input into a {@link CommonTokenStream} of
+ * {@code CommonToken}s and into an {@link ArrayTokenStream}. Run it with
+ * {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes
+ * allocated per operation. The parse variants do not build a parse tree; the
+ * array variant matches tokens like a parser generated with
+ * {@code scalaTokens=arrays}, whose {@code matchType} the Java recognizers
+ * here reproduce by overriding {@code match}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenBufferBenchmark {
+
+	@Param({ "JSON", "SQL" })
+	public RecognizerCorpus grammar;
+
+	private String input;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		input = grammar.input();
+	}
+
+	@Benchmark
+	public int lexCommonTokens() {
+		final CommonTokenStream tokens = new CommonTokenStream(grammar.newLexer(input));
+		tokens.fill();
+		return tokens.size();
+	}
+
+	@Benchmark
+	public int lexTokenArrays() {
+		final ArrayTokenStream tokens = new ArrayTokenStream(grammar.newLexer(input));
+		tokens.fill();
+		return tokens.size();
+	}
+
+	@Benchmark
+	public ParserRuleContext parseCommonTokens() {
+		final Parser parser = grammar.newParser(new CommonTokenStream(grammar.newLexer(input)));
+		parser.setBuildParseTree(false);
+		return grammar.parse(parser);
+	}
+
+	@Benchmark
+	public ParserRuleContext parseTokenArrays() {
+		final TokenStream tokens = new ArrayTokenStream(grammar.newLexer(input));
+		final Parser parser = grammar == RecognizerCorpus.SQL ? new ArraySqlParser(tokens) : new ArrayJsonParser(tokens);
+		parser.setBuildParseTree(false);
+		return grammar.parse(parser);
+	}
+
+	static class ArraySqlParser extends SqlParser {
+
+		ArraySqlParser(TokenStream input) {
+			super(input);
+		}
+
+		/** The generated {@code matchType}; the corpus grammars have no token labels. */
+		@Override
+		public Token match(int ttype) {
+			if (_input.LA(1) == ttype && !_buildParseTrees && (_parseListeners == null || _parseListeners.isEmpty())) {
+				_errHandler.reportMatch(this);
+				if (ttype != Token.EOF) {
+					_input.consume();
+				}
+				return null;
+			}
+			return super.match(ttype);
+		}
+	}
+
+	static class ArrayJsonParser extends JsonParser {
+
+		ArrayJsonParser(TokenStream input) {
+			super(input);
+		}
+
+		/** The generated {@code matchType}; the corpus grammars have no token labels. */
+		@Override
+		public Token match(int ttype) {
+			if (_input.LA(1) == ttype && !_buildParseTrees && (_parseListeners == null || _parseListeners.isEmpty())) {
+				_errHandler.reportMatch(this);
+				if (ttype != Token.EOF) {
+					_input.consume();
+				}
+				return null;
+			}
+			return super.match(ttype);
+		}
+	}
+}
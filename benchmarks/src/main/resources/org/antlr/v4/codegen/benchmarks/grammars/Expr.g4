@@ -0,0 +1,32 @@
+grammar Expr;
+
+// Precedence is encoded with one rule per level rather than with a
+// left-recursive rule so every decision goes through the plain
+// AltBlock/StarBlock templates.
+
+prog : stat* EOF ;
+
+stat : ID '=' expr ';'
+     | 'print' expr ';'
+     | expr ';'
+     ;
+
+expr : term (('+' | '-') term)* ;
+
+term : unary (('*' | '/' | '%') unary)* ;
+
+unary : ('-' | '!') unary
+      | primary
+      ;
+
+primary : INT
+        | ID '(' args? ')'
+        | ID
+        | '(' expr ')'
+        ;
+
+args : expr (',' expr)* ;
+
+ID : [a-zA-Z_] [a-zA-Z_0-9]* ;
+INT : [0-9]+ ;
+WS : [ \t\r\n]+ -> skip ;
@@ -0,0 +1,114 @@
+grammar Sql;
+
+script : statement (';' statement)* ';'? EOF ;
+
+statement : select
+          | insert
+          | update
+          | delete
+          ;
+
+select : SELECT DISTINCT? selectList FROM tableRef join* where? groupBy? orderBy? limit? ;
+
+selectList : '*'
+           | selectItem (',' selectItem)*
+           ;
+
+selectItem : expr (AS? ID)? ;
+
+tableRef : qualifiedName (AS? ID)? ;
+
+join : (INNER | LEFT OUTER?)? JOIN tableRef ON expr ;
+
+where : WHERE expr ;
+
+groupBy : GROUP BY expr (',' expr)* (HAVING expr)? ;
+
+orderBy : ORDER BY orderItem (',' orderItem)* ;
+
+orderItem : expr (ASC | DESC)? ;
+
+limit : LIMIT INT (OFFSET INT)? ;
+
+insert : INSERT INTO qualifiedName ('(' ID (',' ID)* ')')? VALUES row (',' row)* ;
+
+row : '(' expr (',' expr)* ')' ;
+
+update : UPDATE qualifiedName SET assignment (',' assignment)* where? ;
+
+assignment : ID '=' expr ;
+
+delete : DELETE FROM qualifiedName where? ;
+
+expr : andExpr (OR andExpr)* ;
+
+andExpr : notExpr (AND notExpr)* ;
+
+notExpr : NOT notExpr
+        | predicate
+        ;
+
+predicate : additive (compareOp additive | IS NOT? NULL | IN '(' expr (',' expr)* ')' | LIKE STRING)? ;
+
+compareOp : '=' | '<>' | '<' | '<=' | '>' | '>=' ;
+
+additive : multiplicative (('+' | '-') multiplicative)* ;
+
+multiplicative : atom (('*' | '/') atom)* ;
+
+atom : literal
+     | qualifiedName '(' (expr (',' expr)*)? ')'
+     | qualifiedName
+     | '(' expr ')'
+     ;
+
+literal : INT | DECIMAL | STRING | NULL | TRUE | FALSE ;
+
+qualifiedName : ID ('.' ID)* ;
+
+SELECT : S E L E C T ;
+DISTINCT : D I S T I N C T ;
+FROM : F R O M ;
+AS : A S ;
+INNER : I N N E R ;
+LEFT : L E F T ;
+OUTER : O U T E R ;
+JOIN : J O I N ;
+ON : O N ;
+WHERE : W H E R E ;
+GROUP : G R O U P ;
+BY : B Y ;
+HAVING : H A V I N G ;
+ORDER : O R D E R ;
+ASC : A S C ;
+DESC : D E S C ;
+LIMIT : L I M I T ;
+OFFSET : O F F S E T ;
+INSERT : I N S E R T ;
+INTO : I N T O ;
+VALUES : V A L U E S ;
+UPDATE : U P D A T E ;
+SET : S E T ;
+DELETE : D E L E T E ;
+AND : A N D ;
+OR : O R ;
+NOT : N O T ;
+IS : I S ;
+IN : I N ;
+LIKE : L I K E ;
+NULL : N U L L ;
+TRUE : T R U E ;
+FALSE : F A L S E ;
+
+ID : [a-zA-Z_] [a-zA-Z_0-9]* ;
+INT : [0-9]+ ;
+DECIMAL : [0-9]+ '.' [0-9]+ ;
+STRING : '\'' ('\'\'' | ~'\'')* '\'' ;
+WS : [ \t\r\n]+ -> skip ;
+
+fragment A : [aA] ; fragment B : [bB] ; fragment C : [cC] ; fragment D : [dD] ;
+fragment E : [eE] ; fragment F : [fF] ; fragment G : [gG] ; fragment H : [hH] ;
+fragment I : [iI] ; fragment J : [jJ] ; fragment K : [kK] ; fragment L : [lL] ;
+fragment M : [mM] ; fragment N : [nN] ; fragment O : [oO] ; fragment P : [pP] ;
+fragment R : [rR] ; fragment S : [sS] ; fragment T : [tT] ; fragment U : [uU] ;
+fragment V : [vV] ; fragment W : [wW] ; fragment X : [xX] ; fragment Y : [yY] ;
@@ -0,0 +1,113 @@
+package org.antlr.v4.codegen.benchmarks;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.antlr.v4.codegen.benchmarks.precedence.PrecLexer;
+import org.antlr.v4.codegen.benchmarks.precedence.PrecParser;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.junit.Test;
+
+/**
+ * Parses with the Prec grammar generated with and without
+ * {@code scalaPrecedence=climbing}. Valid input gives the same tree; on
+ * invalid input both report errors, but the recovered trees may differ,
+ * because climbing decides on the next token where {@code adaptivePredict}
+ * looks ahead until the input no longer fits.
+ */
+public class PrecedenceClimbingTest {
+
+	private static final String[] INVALID = { "- 1 * -", "(1 + 2", "1 + * 2", "1 2", ")", "1 + (2 * -)", "",
+			"1 * / 2", "- - (3" };
+
+	@Test
+	public void buildsSameTreeOnValidInput() {
+		final String[] fixed = { "1 + 2 * 3", "1 * - 2 + 3", "- - 3 / 4 - 5", "1 * (2 + 3) / - 4", "((1))" };
+		for (String input : fixed) {
+			assertSameTree(input);
+		}
+
+		final Random random = new Random(24);
+		for (int i = 0; i < 500; i++) {
+			assertSameTree(expression(random, 4));
+		}
+	}
+
+	@Test
+	public void reportsErrorsOnInvalidInput() {
+		for (String input : INVALID) {
+			final Parsed predicted = predicted(input);
+			final Parsed climbing = climbing(input);
+			assertTrue(input, predicted.errors > 0);
+			assertTrue(input, climbing.errors > 0);
+		}
+	}
+
+	@Test
+	public void recoversDifferentlyAfterOperator() {
+		// adaptivePredict leaves the operand of '-' before '*' since no operand follows the second '-';
+		// climbing takes '*' into it and only reports the missing operand
+		final String input = "- 1 * -";
+		final Parsed predicted = predicted(input);
+		final Parsed climbing = climbing(input);
+		assertEquals("(s (e (e - (e 1)) * (e - e)) <EOF>)", predicted.tree);
+		assertEquals(2, predicted.errors);
+		assertEquals("(s (e - (e (e 1) * (e - e))) <EOF>)", climbing.tree);
+		assertEquals(1, climbing.errors);
+	}
+
+	private static void assertSameTree(String input) {
+		final Parsed predicted = predicted(input);
+		final Parsed climbing = climbing(input);
+		assertEquals(input, 0, predicted.errors);
+		assertEquals(input, predicted.tree, climbing.tree);
+		assertEquals(input, predicted.errors, climbing.errors);
+	}
+
+	/** Returns a valid expression of at most {@code depth} nested operators. */
+	private static String expression(Random random, int depth) {
+		final int choice = depth == 0 ? 3 : random.nextInt(5);
+		switch (choice) {
+		case 0:
+			return expression(random, depth - 1) + " " + "*/".charAt(random.nextInt(2)) + " " + expression(random, depth - 1);
+		case 1:
+			return expression(random, depth - 1) + " " + "+-".charAt(random.nextInt(2)) + " " + expression(random, depth - 1);
+		case 2:
+			return "- " + expression(random, depth - 1);
+		case 4:
+			return "(" + expression(random, depth - 1) + ")";
+		default:
+			return Integer.toString(random.nextInt(100));
+		}
+	}
+
+	private static Parsed predicted(String input) {
+		final PrecParser parser = new PrecParser(new CommonTokenStream(new PrecLexer(new ANTLRInputStream(input))));
+		parser.removeErrorListeners();
+		return new Parsed(parser.s(), parser);
+	}
+
+	private static Parsed climbing(String input) {
+		final org.antlr.v4.codegen.benchmarks.climbing.PrecParser parser = new org.antlr.v4.codegen.benchmarks.climbing.PrecParser(
+				new CommonTokenStream(new org.antlr.v4.codegen.benchmarks.climbing.PrecLexer(new ANTLRInputStream(input))));
+		parser.removeErrorListeners();
+		return new Parsed(parser.s(), parser);
+	}
+
+	private static final class Parsed {
+
+		final String tree;
+
+		final int errors;
+
+		Parsed(ParserRuleContext tree, Parser parser) {
+			this.tree = tree.toStringTree(parser);
+			this.errors = parser.getNumberOfSyntaxErrors();
+		}
+	}
+}
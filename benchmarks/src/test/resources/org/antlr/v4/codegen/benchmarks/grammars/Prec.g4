@@ -0,0 +1,16 @@
+grammar Prec;
+
+// Binary operators and a prefix operator in one left-recursive rule, so
+// the operator loop of e qualifies for scalaPrecedence=climbing.
+
+s : e EOF ;
+
+e : e ('*' | '/') e
+  | e ('+' | '-') e
+  | '-' e
+  | INT
+  | '(' e ')'
+  ;
+
+INT : [0-9]+ ;
+WS : [ \t\r\n]+ -> skip ;
@@ -0,0 +1,231 @@
+package org.antlr.v4.codegen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.antlr.v4.Tool;
+import org.antlr.v4.tool.Grammar;
+
+/**
+ * A content-addressed store of generated files. Each entry is keyed by a hash
+ * of everything that determines the output: the grammar and its imports, the
+ * resolved token types, the tool flags and options, the classes of the target
+ * and the template group. A hit lets the target copy the file instead of
+ * rendering it.
+ */
+class GeneratedFileCache {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static volatile String targetDigest;
+
+	private static final ConcurrentMap<String, String> templateDigests = new ConcurrentHashMap<String, String>();
+
+	private final File directory;
+
+	GeneratedFileCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Copies the cached file for {@code key} to the output location of
+	 * {@code fileName}. Returns {@code false} when there is no entry.
+	 */
+	boolean restore(Grammar g, String fileName, String key) throws IOException {
+		final File cached = new File(directory, key);
+		if (!cached.isFile()) {
+			return false;
+		}
+
+		final File output = outputFile(g, fileName);
+		output.getParentFile().mkdirs();
+		Files.copy(cached.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		return true;
+	}
+
+	/** Stores the file just generated for {@code fileName} under {@code key}. */
+	void store(Grammar g, String fileName, String key) throws IOException {
+		final File output = outputFile(g, fileName);
+		if (!output.isFile()) {
+			return;
+		}
+
+		directory.mkdirs();
+		// write under a private name first so concurrent builds never see a partial entry
+		final Path tmp = Files.createTempFile(directory.toPath(), key, ".tmp");
+		try {
+			Files.copy(output.toPath(), tmp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmp, new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	static String key(ScalaTarget target, Grammar g, String fileName, String templateGroup,
+			Map<String, Object> targetOptions) {
+		final MessageDigest digest = sha256();
+		final Tool tool = target.getCodeGenerator().tool;
+
+		update(digest, targetDigest());
+		update(digest, Tool.VERSION);
+		update(digest, target.getClass().getName());
+		update(digest, templateDigest(templateGroup));
+		update(digest, fileName);
+		update(digest, tool.genPackage);
+		update(digest, String.valueOf(tool.gen_listener));
+		update(digest, String.valueOf(tool.gen_visitor));
+		update(digest, String.valueOf(tool.gen_dependencies));
+		update(digest, String.valueOf(tool.force_atn));
+		// the tool leaves grammarOptions null when it was started without -D options
+		update(digest, String.valueOf(tool.grammarOptions != null
+				? new TreeMap<String, String>(tool.grammarOptions) : new TreeMap<String, String>()));
+		update(digest, String.valueOf(new TreeMap<String, Object>(targetOptions)));
+		update(digest, g.fileName);
+		update(digest, g.text);
+		final List<Grammar> imports = g.getAllImportedGrammars();
+		if (imports != null) {
+			for (Grammar imported : imports) {
+				update(digest, imported.fileName);
+				update(digest, imported.text);
+			}
+		}
+		update(digest, String.valueOf(new TreeMap<String, Integer>(g.tokenNameToTypeMap)));
+		update(digest, String.valueOf(new TreeMap<String, Integer>(g.stringLiteralToTypeMap)));
+
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Returns the digest of the jar or class directory the target is loaded
+	 * from, so that output of one build of the target is never reused by
+	 * another.
+	 */
+	private static String targetDigest() {
+		String result = targetDigest;
+		if (result == null) {
+			final CodeSource source = GeneratedFileCache.class.getProtectionDomain().getCodeSource();
+			if (source == null || source.getLocation() == null) {
+				throw new IllegalStateException("Cannot locate the classes of the Scala target");
+			}
+
+			final MessageDigest digest = sha256();
+			try {
+				final File location = new File(source.getLocation().toURI());
+				if (location.isDirectory()) {
+					updateDirectory(digest, location, "");
+				} else {
+					digest.update(Files.readAllBytes(location.toPath()));
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read the classes of the Scala target", e);
+			} catch (URISyntaxException e) {
+				throw new IllegalStateException("Cannot locate the classes of the Scala target", e);
+			}
+
+			result = hex(digest.digest());
+			targetDigest = result;
+		}
+
+		return result;
+	}
+
+	private static void updateDirectory(MessageDigest digest, File directory, String path) throws IOException {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		Arrays.sort(files);
+		for (File f : files) {
+			final String name = path + "/" + f.getName();
+			if (f.isDirectory()) {
+				updateDirectory(digest, f, name);
+			} else {
+				update(digest, name);
+				digest.update(Files.readAllBytes(f.toPath()));
+			}
+		}
+	}
+
+	private static String templateDigest(String templateGroup) {
+		String result = templateDigests.get(templateGroup);
+		if (result == null) {
+			final MessageDigest digest = sha256();
+			final InputStream in = GeneratedFileCache.class.getClassLoader().getResourceAsStream(templateGroup);
+			if (in == null) {
+				throw new IllegalStateException("Cannot find template group " + templateGroup);
+			}
+
+			try {
+				try {
+					digest.update(readFully(in));
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot read template group " + templateGroup, e);
+			}
+
+			result = hex(digest.digest());
+			templateDigests.putIfAbsent(templateGroup, result);
+		}
+
+		return result;
+	}
+
+	private File outputFile(Grammar g, String fileName) {
+		return new File(g.tool.getOutputDirectory(g.fileName), fileName);
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value != null) {
+			digest.update(value.getBytes(UTF8));
+		}
+		// separate fields so adjacent values cannot run together
+		digest.update((byte) 0);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+}
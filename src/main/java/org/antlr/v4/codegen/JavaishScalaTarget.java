@@ -6,4 +6,9 @@ public class JavaishScalaTarget extends ScalaTarget {
 	public JavaishScalaTarget(CodeGenerator gen) {
 		super(gen);
 	}
+
+	@Override
+	protected String getTemplateGroupName() {
+		return "JavaishScala";
+	}
 }
@@ -0,0 +1,151 @@
+package org.antlr.v4.codegen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.antlr.v4.Tool;
+
+/**
+ * Generates many grammars concurrently, running one {@link Tool} per grammar
+ * on a fixed pool of threads. The Scala targets share one loaded template
+ * group and one set of bad words per target class, so a batch parses each
+ * group file once however many grammars and threads it has. Grammars that
+ * import another grammar of the batch or read its {@code .tokens} file must
+ * be generated in an earlier batch.
+ * <p/>
+ * On the command line the arguments are those of the ANTLR tool plus
+ * {@code -threads <n>}, which defaults to the number of processors; every
+ * argument ending in {@code .g4} or {@code .g} is a grammar. The exit status
+ * is 1 when any grammar had errors.
+ */
+public final class ScalaBatchGenerator {
+
+	/** The outcome of generating one grammar. */
+	public static final class Result {
+
+		private final String grammarFile;
+
+		private final int errors;
+
+		private final int warnings;
+
+		private final long nanos;
+
+		Result(String grammarFile, int errors, int warnings, long nanos) {
+			this.grammarFile = grammarFile;
+			this.errors = errors;
+			this.warnings = warnings;
+			this.nanos = nanos;
+		}
+
+		public String getGrammarFile() {
+			return grammarFile;
+		}
+
+		public int getErrors() {
+			return errors;
+		}
+
+		public int getWarnings() {
+			return warnings;
+		}
+
+		/** The wall-clock time the tool took for this grammar. */
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return grammarFile + ": " + errors + " errors, " + warnings + " warnings, " + nanos / 1000000 + " ms";
+		}
+	}
+
+	private ScalaBatchGenerator() {
+	}
+
+	/**
+	 * Runs the tool with {@code options} on each of {@code grammarFiles} on
+	 * {@code parallelism} threads and returns a result for each, in the order
+	 * of {@code grammarFiles}. Errors are reported by each tool as usual and
+	 * counted in the results; an exception thrown by a tool stops the batch
+	 * and is rethrown.
+	 */
+	public static List<Result> generateAll(List<String> grammarFiles, final String[] options, int parallelism)
+			throws InterruptedException {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+		}
+
+		final List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(grammarFiles.size());
+		for (final String grammarFile : grammarFiles) {
+			tasks.add(new Callable<Result>() {
+				@Override
+				public Result call() {
+					return generate(grammarFile, options);
+				}
+			});
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())));
+		try {
+			final List<Result> results = new ArrayList<Result>(tasks.size());
+			for (Future<Result> future : executor.invokeAll(tasks)) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static Result generate(String grammarFile, String[] options) {
+		final String[] args = Arrays.copyOf(options, options.length + 1);
+		args[options.length] = grammarFile;
+
+		final long start = System.nanoTime();
+		final Tool tool = new Tool(args);
+		tool.processGrammarsOnCommandLine();
+		return new Result(grammarFile, tool.getNumErrors(), tool.errMgr.warnings, System.nanoTime() - start);
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		final List<String> options = new ArrayList<String>();
+		final List<String> grammarFiles = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-threads".equals(args[i]) && i + 1 < args.length) {
+				parallelism = Integer.parseInt(args[++i]);
+			} else if (args[i].endsWith(".g4") || args[i].endsWith(".g")) {
+				grammarFiles.add(args[i]);
+			} else {
+				options.add(args[i]);
+			}
+		}
+
+		final long start = System.nanoTime();
+		final List<Result> results = generateAll(grammarFiles, options.toArray(new String[options.size()]), parallelism);
+		int errors = 0;
+		for (Result result : results) {
+			errors += result.getErrors();
+		}
+		System.err.println(results.size() + " grammars on " + parallelism + " threads in "
+				+ (System.nanoTime() - start) / 1000000 + " ms, " + errors + " errors");
+		if (errors > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package org.antlr.v4.codegen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.codegen.model.AltBlock;
+import org.antlr.v4.codegen.model.Choice;
+import org.antlr.v4.codegen.model.OptionalBlock;
+import org.antlr.v4.codegen.model.PlusBlock;
+import org.antlr.v4.codegen.model.StarBlock;
+import org.antlr.v4.parse.ANTLRParser;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LeftRecursiveRule;
+import org.antlr.v4.tool.Rule;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Lists the decisions of a parser template tree that are not LL(1), which
+ * the generated parser predicts with {@code adaptivePredict} rather than a
+ * switch on the next token. Written as JSON with the
+ * {@code scalaDecisionReport=json} option so grammar authors can find the
+ * decisions worth refactoring without profiling the parser.
+ */
+public class ScalaDecisionReport {
+
+	/** One decision predicted with {@code adaptivePredict}. */
+	public static class Decision {
+
+		private final int decision;
+
+		private final String rule;
+
+		private final String kind;
+
+		private final int alternatives;
+
+		private final int line;
+
+		private final int column;
+
+		private final boolean predicates;
+
+		private final boolean leftRecursive;
+
+		Decision(int decision, String rule, String kind, int alternatives, int line, int column, boolean predicates,
+				boolean leftRecursive) {
+			this.decision = decision;
+			this.rule = rule;
+			this.kind = kind;
+			this.alternatives = alternatives;
+			this.line = line;
+			this.column = column;
+			this.predicates = predicates;
+			this.leftRecursive = leftRecursive;
+		}
+
+		public int getDecision() {
+			return decision;
+		}
+
+		public String getRule() {
+			return rule;
+		}
+
+		/** {@code alt}, {@code optional}, {@code star} or {@code plus}. */
+		public String getKind() {
+			return kind;
+		}
+
+		public int getAlternatives() {
+			return alternatives;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public int getColumn() {
+			return column;
+		}
+
+		/** Whether a semantic predicate appears in one of the alternatives. */
+		public boolean hasPredicates() {
+			return predicates;
+		}
+
+		/** Whether the decision belongs to a left-recursive rule. */
+		public boolean isLeftRecursive() {
+			return leftRecursive;
+		}
+	}
+
+	private final Grammar g;
+
+	private final List<Decision> decisions = new ArrayList<Decision>();
+
+	public ScalaDecisionReport(Grammar g) {
+		this.g = g;
+	}
+
+	/** The decisions found so far, by decision number. */
+	public List<Decision> getDecisions() {
+		final List<Decision> result = new ArrayList<Decision>(decisions);
+		Collections.sort(result, new Comparator<Decision>() {
+			@Override
+			public int compare(Decision o1, Decision o2) {
+				return o1.getDecision() - o2.getDecision();
+			}
+		});
+		return result;
+	}
+
+	/** Collects the decisions of {@code st} and every template nested in its attributes. */
+	public void process(ST st) {
+		final Map<String, Object> attributes = st.getAttributes();
+		if (attributes == null) {
+			return;
+		}
+
+		final Object choice = attributes.get("choice");
+		if ((choice instanceof AltBlock || choice instanceof StarBlock || choice instanceof PlusBlock)
+				&& attributes.get("climbing") == null) {
+			add((Choice) choice);
+		}
+
+		for (Object value : attributes.values()) {
+			processValue(value);
+		}
+	}
+
+	private void processValue(Object value) {
+		if (value instanceof ST) {
+			process((ST) value);
+		} else if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				processValue(element);
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				processValue(element);
+			}
+		}
+	}
+
+	private void add(Choice choice) {
+		final Rule rule = g.getRule(g.atn.decisionToState.get(choice.decision).ruleIndex);
+		final String kind = choice instanceof OptionalBlock ? "optional"
+				: choice instanceof StarBlock ? "star"
+				: choice instanceof PlusBlock ? "plus"
+				: "alt";
+		final boolean predicates = choice.ast != null && !choice.ast.getNodesWithType(ANTLRParser.SEMPRED).isEmpty();
+		decisions.add(new Decision(choice.decision, rule.name, kind, choice.alts.size(),
+				choice.ast != null ? choice.ast.getLine() : 0,
+				choice.ast != null ? choice.ast.getCharPositionInLine() : 0,
+				predicates, rule instanceof LeftRecursiveRule));
+	}
+
+	/** Renders the report as a JSON object. */
+	public String toJSON() {
+		final StringBuilder builder = new StringBuilder();
+		builder.append("{\n");
+		builder.append("  \"grammar\": ").append(quote(g.fileName)).append(",\n");
+		builder.append("  \"recognizer\": ").append(quote(g.getRecognizerName())).append(",\n");
+		builder.append("  \"decisions\": [");
+		final List<Decision> sorted = getDecisions();
+		for (int i = 0; i < sorted.size(); i++) {
+			final Decision d = sorted.get(i);
+			builder.append(i == 0 ? "\n" : ",\n");
+			builder.append("    {\"decision\": ").append(d.getDecision())
+					.append(", \"rule\": ").append(quote(d.getRule()))
+					.append(", \"kind\": ").append(quote(d.getKind()))
+					.append(", \"alternatives\": ").append(d.getAlternatives())
+					.append(", \"line\": ").append(d.getLine())
+					.append(", \"column\": ").append(d.getColumn())
+					.append(", \"predicates\": ").append(d.hasPredicates())
+					.append(", \"leftRecursive\": ").append(d.isLeftRecursive())
+					.append('}');
+		}
+		builder.append(sorted.isEmpty() ? "]\n" : "\n  ]\n");
+		builder.append("}\n");
+		return builder.toString();
+	}
+
+	private static String quote(String value) {
+		final StringBuilder builder = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
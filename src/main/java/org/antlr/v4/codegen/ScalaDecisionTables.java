@@ -0,0 +1,173 @@
+package org.antlr.v4.codegen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.codegen.model.Choice;
+import org.antlr.v4.codegen.model.LL1Choice;
+import org.antlr.v4.codegen.model.LL1PlusBlock;
+import org.antlr.v4.codegen.model.LL1StarBlock;
+import org.antlr.v4.codegen.model.TestSetInline;
+import org.antlr.v4.tool.Grammar;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Prepares the LL(1) decisions of a parser template tree before it is
+ * rendered. Token sets that span more than one 64-bit word are hoisted into
+ * {@code Array[Long]} constants of the companion object, so a test is one
+ * array lookup instead of a shift-and-mask per word. The {@code @switch}
+ * matches are checked for case labels scalac cannot compile to a switch,
+ * which must be integer literals or token constants of the companion object.
+ */
+public class ScalaDecisionTables {
+
+	/** The words of a hoisted token set, named as in the companion object. */
+	public static class TokenSet {
+
+		private final String name;
+
+		private final List<String> words;
+
+		TokenSet(String name, List<String> words) {
+			this.name = name;
+			this.words = words;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<String> getWords() {
+			return words;
+		}
+	}
+
+	private final Grammar g;
+
+	private final Map<List<String>, TokenSet> tokenSets = new LinkedHashMap<List<String>, TokenSet>();
+
+	private final List<String> warnings = new ArrayList<String>();
+
+	public ScalaDecisionTables(Grammar g) {
+		this.g = g;
+	}
+
+	public List<TokenSet> getTokenSets() {
+		return new ArrayList<TokenSet>(tokenSets.values());
+	}
+
+	/** Describes each match that cannot compile to a switch. */
+	public List<String> getWarnings() {
+		return Collections.unmodifiableList(warnings);
+	}
+
+	/** Processes {@code st} and every template nested in its attributes. */
+	public void process(ST st) {
+		final Map<String, Object> attributes = st.getAttributes();
+		if (attributes == null) {
+			return;
+		}
+
+		final String name = st.getName().substring(st.getName().lastIndexOf('/') + 1);
+		if (name.equals("TestSetInline") && attributes.get("s") instanceof TestSetInline) {
+			hoist(st, (TestSetInline) attributes.get("s"));
+		} else if (name.startsWith("LL1") && !name.endsWith("SingleAlt") && attributes.get("choice") instanceof Choice) {
+			check((Choice) attributes.get("choice"));
+		}
+
+		for (Object value : attributes.values()) {
+			processValue(value);
+		}
+	}
+
+	private void processValue(Object value) {
+		if (value instanceof ST) {
+			process((ST) value);
+		} else if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				processValue(element);
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				processValue(element);
+			}
+		}
+	}
+
+	private void hoist(ST st, TestSetInline test) {
+		if (test.bitsets.length < 2) {
+			return;
+		}
+
+		final List<Long> words = new ArrayList<Long>();
+		for (TestSetInline.Bitset bitset : test.bitsets) {
+			for (String label : bitset.ttypes) {
+				final int type = tokenType(label);
+				if (type <= 0) {
+					// EOF or a label that is not a token type
+					return;
+				}
+				while (words.size() <= type >>> 6) {
+					words.add(0L);
+				}
+				words.set(type >>> 6, words.get(type >>> 6) | (1L << type));
+			}
+		}
+
+		final List<String> literals = new ArrayList<String>();
+		for (Long word : words) {
+			literals.add("0x" + Long.toHexString(word));
+		}
+
+		TokenSet tokenSet = tokenSets.get(literals);
+		if (tokenSet == null) {
+			tokenSet = new TokenSet("_tokenSet" + tokenSets.size(), literals);
+			tokenSets.put(literals, tokenSet);
+		}
+		st.add("tokenSet", tokenSet);
+	}
+
+	private void check(Choice choice) {
+		final List<String[]> looks = new ArrayList<String[]>();
+		if (choice instanceof LL1Choice) {
+			looks.addAll(((LL1Choice) choice).altLook);
+		} else if (choice instanceof LL1StarBlock) {
+			looks.addAll(((LL1StarBlock) choice).altLook);
+			looks.add(((LL1StarBlock) choice).exitLook);
+		} else if (choice instanceof LL1PlusBlock) {
+			looks.addAll(((LL1PlusBlock) choice).altLook);
+		}
+
+		final Set<String> seen = new HashSet<String>();
+		for (String[] look : looks) {
+			for (String label : look) {
+				if (!seen.add(label)) {
+					warn(choice, "token " + label + " is matched by more than one case");
+				} else if (!label.equals("EOF") && !isInteger(label) && !g.tokenNameToTypeMap.containsKey(label)) {
+					warn(choice, label + " is not a constant of the companion object");
+				}
+			}
+		}
+	}
+
+	private void warn(Choice choice, String reason) {
+		final String location = choice.ast != null ? g.fileName + ":" + choice.ast.getLine() + ": " : g.fileName + ": ";
+		warnings.add(location + "LL(1) match of decision " + choice.decision + " cannot compile to a switch: " + reason);
+	}
+
+	private int tokenType(String label) {
+		if (isInteger(label)) {
+			return Integer.parseInt(label);
+		}
+		return label.equals("EOF") ? -1 : g.getTokenType(label);
+	}
+
+	private static boolean isInteger(String label) {
+		return label.matches("-?[0-9]+");
+	}
+}
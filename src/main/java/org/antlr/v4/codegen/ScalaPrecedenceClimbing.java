@@ -0,0 +1,318 @@
+package org.antlr.v4.codegen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.codegen.model.AltBlock;
+import org.antlr.v4.codegen.model.Choice;
+import org.antlr.v4.codegen.model.StarBlock;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.AtomTransition;
+import org.antlr.v4.runtime.atn.BlockEndState;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.LL1Analyzer;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
+import org.antlr.v4.runtime.atn.PredicateTransition;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.RangeTransition;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.SetTransition;
+import org.antlr.v4.runtime.atn.StarBlockStartState;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LeftRecursiveRule;
+import org.antlr.v4.tool.Rule;
+import org.stringtemplate.v4.ST;
+
+/**
+ * Prepares the operator loops of left-recursive rules for precedence
+ * climbing ({@code scalaPrecedence=climbing}). The loop after the primary
+ * alternatives normally calls {@code adaptivePredict} twice per operator,
+ * once to continue the loop and once to pick the operator, and checks the
+ * operator's {@code precpred} predicate along the way. When every operator
+ * alternative starts with its own set of tokens, and no operator token can
+ * follow the rule anywhere but after one of its own operands, the next token
+ * alone decides: the loop continues while it is an operator whose precedence
+ * is at least the rule's, and the operator is the one it starts. On valid
+ * input the tree is the one {@code adaptivePredict} would have built. On
+ * invalid input it need not be: {@code adaptivePredict} leaves the loop when
+ * no valid operand follows an operator, and climbing takes the operator and
+ * reports the missing operand, so the errors and the recovered tree differ.
+ */
+public class ScalaPrecedenceClimbing {
+
+	/** The operator loop of a left-recursive rule. */
+	public static class Loop {
+
+		private final String ruleName;
+
+		private final int decision;
+
+		private final int operatorDecision;
+
+		private final List<Operator> operators;
+
+		Loop(String ruleName, int decision, int operatorDecision, List<Operator> operators) {
+			this.ruleName = ruleName;
+			this.decision = decision;
+			this.operatorDecision = operatorDecision;
+			this.operators = operators;
+		}
+
+		public String getRuleName() {
+			return ruleName;
+		}
+
+		/** The decision that continues or exits the loop. */
+		public int getDecision() {
+			return decision;
+		}
+
+		/** The decision between the operators, or -1 when there is only one. */
+		public int getOperatorDecision() {
+			return operatorDecision;
+		}
+
+		/** The operators in the order of their alternatives. */
+		public List<Operator> getOperators() {
+			return operators;
+		}
+	}
+
+	/** An operator alternative of a loop. */
+	public static class Operator {
+
+		private final String[] tokens;
+
+		private final int precedence;
+
+		Operator(String[] tokens, int precedence) {
+			this.tokens = tokens;
+			this.precedence = precedence;
+		}
+
+		/** The token types that start the operator, as case labels. */
+		public String[] getTokens() {
+			return tokens;
+		}
+
+		public int getPrecedence() {
+			return precedence;
+		}
+	}
+
+	private final Grammar g;
+
+	private final Target target;
+
+	private final Map<Integer, Loop> loops = new HashMap<Integer, Loop>();
+
+	private final List<String> warnings = new ArrayList<String>();
+
+	public ScalaPrecedenceClimbing(Grammar g, Target target) {
+		this.g = g;
+		this.target = target;
+		for (Rule rule : g.rules.values()) {
+			if (rule instanceof LeftRecursiveRule) {
+				analyze(rule);
+			}
+		}
+	}
+
+	/** Describes each left-recursive rule that keeps {@code adaptivePredict}. */
+	public List<String> getWarnings() {
+		return Collections.unmodifiableList(warnings);
+	}
+
+	/**
+	 * Gives the loop and operator blocks of {@code st} and every template
+	 * nested in its attributes their {@code climbing} loop.
+	 */
+	public void process(ST st) {
+		final Map<String, Object> attributes = st.getAttributes();
+		if (attributes == null) {
+			return;
+		}
+
+		final Object choice = attributes.get("choice");
+		if (choice instanceof StarBlock || choice instanceof AltBlock) {
+			final Loop loop = loops.get(((Choice) choice).decision);
+			if (loop != null && attributes.containsKey("climbing")) {
+				st.add("climbing", loop);
+			}
+		}
+
+		for (Object value : attributes.values()) {
+			processValue(value);
+		}
+	}
+
+	private void processValue(Object value) {
+		if (value instanceof ST) {
+			process((ST) value);
+		} else if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				processValue(element);
+			}
+		} else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				processValue(element);
+			}
+		}
+	}
+
+	private void analyze(Rule rule) {
+		StarLoopEntryState entry = null;
+		for (DecisionState state : g.atn.decisionToState) {
+			if (state.ruleIndex == rule.index && state instanceof StarLoopEntryState
+					&& state.transition(0).target instanceof StarBlockStartState
+					&& precedence(state.transition(0).target.transition(0).target, new HashSet<ATNState>()) >= 0) {
+				entry = (StarLoopEntryState) state;
+				break;
+			}
+		}
+		if (entry == null) {
+			// only primary alternatives, nothing to climb
+			return;
+		}
+
+		final StarBlockStartState block = (StarBlockStartState) entry.transition(0).target;
+		final List<Operator> operators = new ArrayList<Operator>();
+		final IntervalSet operatorTokens = new IntervalSet();
+		for (int i = 0; i < block.getNumberOfTransitions(); i++) {
+			final ATNState start = block.transition(i).target;
+			final int precedence = precedence(start, new HashSet<ATNState>());
+			final IntervalSet tokens = new IntervalSet();
+			if (precedence < 0 || !firstTokens(start, block.endState, tokens, new HashSet<ATNState>())) {
+				warn(rule, "operator alternative " + (i + 1) + " does not start with a token");
+				return;
+			}
+			if (!operatorTokens.and(tokens).isNil()) {
+				warn(rule, "operators " + operatorTokens.and(tokens).toString(g.getTokenDisplayNames())
+						+ " start more than one alternative");
+				return;
+			}
+
+			operatorTokens.addAll(tokens);
+			operators.add(new Operator(target.getTokenTypesAsTargetLabels(g, tokens.toArray()), precedence));
+		}
+
+		final Set<Integer> visiting = new HashSet<Integer>();
+		visiting.add(rule.index);
+		final IntervalSet follow = follow(rule.index, entry, visiting);
+		if (!operatorTokens.and(follow).isNil()) {
+			warn(rule, "operators " + operatorTokens.and(follow).toString(g.getTokenDisplayNames())
+					+ " may also follow the rule");
+			return;
+		}
+
+		final int operatorDecision = block.getNumberOfTransitions() > 1 ? block.decision : -1;
+		final Loop loop = new Loop(rule.name, entry.decision, operatorDecision, operators);
+		loops.put(entry.decision, loop);
+		if (operatorDecision >= 0) {
+			loops.put(operatorDecision, loop);
+		}
+	}
+
+	/**
+	 * Returns the precedence of the {@code precpred} predicate that starts
+	 * the alternative at {@code state}, or -1 when there is none.
+	 */
+	private int precedence(ATNState state, Set<ATNState> visited) {
+		if (!visited.add(state)) {
+			return -1;
+		}
+
+		for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+			final Transition t = state.transition(i);
+			if (t instanceof PrecedencePredicateTransition) {
+				return ((PrecedencePredicateTransition) t).precedence;
+			} else if (t.isEpsilon() && !(t instanceof RuleTransition) && !(t instanceof PredicateTransition)) {
+				final int precedence = precedence(t.target, visited);
+				if (precedence >= 0) {
+					return precedence;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Adds the tokens that can start the alternative at {@code state} to
+	 * {@code tokens}. Returns false when the alternative can start with
+	 * something other than a token: a rule, a semantic predicate, a negated
+	 * set or wildcard, or nothing at all.
+	 */
+	private boolean firstTokens(ATNState state, BlockEndState end, IntervalSet tokens, Set<ATNState> visited) {
+		if (state == end) {
+			return false;
+		} else if (!visited.add(state)) {
+			return true;
+		}
+
+		for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+			final Transition t = state.transition(i);
+			if (t instanceof AtomTransition || t instanceof RangeTransition
+					|| (t instanceof SetTransition && !(t instanceof NotSetTransition))) {
+				tokens.addAll(t.label());
+			} else if (!t.isEpsilon() || t instanceof RuleTransition || t instanceof PredicateTransition
+					|| !firstTokens(t.target, end, tokens, visited)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the tokens that can follow a call of rule {@code ruleIndex}.
+	 * Inside the left-recursive rule whose loop starts at {@code entry}, a
+	 * call that reaches the loop is an operand of that rule's own operators,
+	 * which the precedence decides, so only what follows it before the loop
+	 * counts.
+	 */
+	private IntervalSet follow(int ruleIndex, StarLoopEntryState entry, Set<Integer> visiting) {
+		final LL1Analyzer analyzer = new LL1Analyzer(g.atn);
+		final IntervalSet follow = new IntervalSet();
+		for (ATNState state : g.atn.states) {
+			if (state == null) {
+				continue;
+			}
+
+			for (int i = 0; i < state.getNumberOfTransitions(); i++) {
+				final Transition t = state.transition(i);
+				if (!(t instanceof RuleTransition) || t.target.ruleIndex != ruleIndex) {
+					continue;
+				}
+
+				final ATNState followState = ((RuleTransition) t).followState;
+				final boolean operand = followState.ruleIndex == entry.ruleIndex;
+				final IntervalSet look = analyzer.LOOK(followState, operand ? entry : null, PredictionContext.EMPTY_LOCAL);
+				if (look.contains(Token.EPSILON)) {
+					look.remove(Token.EPSILON);
+					if (!operand && visiting.add(followState.ruleIndex)) {
+						follow.addAll(follow(followState.ruleIndex, entry, visiting));
+					}
+				}
+				follow.addAll(look);
+			}
+		}
+
+		return follow;
+	}
+
+	private void warn(Rule rule, String reason) {
+		final String location = rule.ast != null ? g.fileName + ":" + rule.ast.getLine() + ": " : g.fileName + ": ";
+		warnings.add(location + "scalaPrecedence=climbing ignored for rule " + rule.name + ": " + reason);
+	}
+}
@@ -1,28 +1,35 @@
 package org.antlr.v4.codegen;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.antlr.v4.Tool;
+import org.antlr.v4.automata.ATNSerializer;
+import org.antlr.v4.codegen.scalamodel.ScalaASTFunction;
 import org.antlr.v4.codegen.scalamodel.ScalaCaseModel;
-import org.antlr.v4.codegen.scalamodel.ScalaModel;
 import org.antlr.v4.codegen.scalamodel.ScalaModels;
-import org.antlr.v4.tool.Alternative;
+import org.antlr.v4.codegen.scalamodel.ScalaRecognizerPair;
+import org.antlr.v4.codegen.scalamodel.ScalaStreamRule;
+import org.antlr.v4.scalaruntime.SerializedATNResource;
+import org.antlr.v4.tool.ErrorType;
 import org.antlr.v4.tool.Grammar;
-import org.antlr.v4.tool.Rule;
-import org.antlr.v4.tool.ast.AltAST;
-import org.antlr.v4.tool.ast.BlockAST;
+import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.ast.GrammarAST;
-import org.antlr.v4.tool.ast.OptionalBlockAST;
-import org.antlr.v4.tool.ast.PlusBlockAST;
-import org.antlr.v4.tool.ast.RuleAST;
-import org.antlr.v4.tool.ast.RuleRefAST;
-import org.antlr.v4.tool.ast.StarBlockAST;
-import org.antlr.v4.tool.ast.TerminalAST;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.StringRenderer;
@@ -43,22 +50,38 @@ public class ScalaTarget extends Target {
 			"override", "sealed", "trait", "type", "val", "var", "with",
 			"yield", };
 
-	/** Avoid grammar symbols in this set to prevent conflicts in gen'd code. */
-	protected final Set<String> badWords = new HashSet<String>();
+	/**
+	 * The grammar symbols to avoid to prevent conflicts in gen'd code, built
+	 * once per target class and shared by its instances.
+	 */
+	private static final ConcurrentMap<Class<?>, Set<String>> sharedBadWords = new ConcurrentHashMap<Class<?>, Set<String>>();
+
+	/** The case-class model of each grammar this target has generated. */
+	private final Map<Grammar, List<ScalaCaseModel>> caseModels = new WeakHashMap<Grammar, List<ScalaCaseModel>>();
+
+	/** The model graph of each grammar, shared by its case classes and AST functions. */
+	private final Map<Grammar, ScalaModels> models = new WeakHashMap<Grammar, ScalaModels>();
 
 	public ScalaTarget(CodeGenerator gen) {
 		super(gen, "Scala");
 	}
 
 	public Set<String> getBadWords() {
-		if (badWords.isEmpty()) {
-			addBadWords();
+		Set<String> result = sharedBadWords.get(getClass());
+		if (result == null) {
+			final Set<String> words = new HashSet<String>();
+			addBadWords(words);
+			result = Collections.unmodifiableSet(words);
+			final Set<String> existing = sharedBadWords.putIfAbsent(getClass(), result);
+			if (existing != null) {
+				result = existing;
+			}
 		}
 
-		return badWords;
+		return result;
 	}
 
-	protected void addBadWords() {
+	protected void addBadWords(Set<String> badWords) {
 		badWords.addAll(Arrays.asList(javaKeywords));
 		badWords.add("rule");
 		badWords.add("parserRule");
@@ -152,16 +175,12 @@ public class ScalaTarget extends Target {
 			return targetCharValueEscape[v];
 		}
 
-		if (v >= 0x20 && v < 127
-				&& (!Character.isDigit(v) || v == '8' || v == '9')) {
+		if (v >= 0x20 && v < 127) {
 			return String.valueOf((char) v);
 		}
 
-		if (v >= 0 && v <= 127) {
-			String oct = Integer.toOctalString(v);
-			return "\\" + oct;
-		}
-
+		// scalac deprecates octal escapes; the characters that must not
+		// appear raw in a literal are escaped above
 		String hex = Integer.toHexString(v | 0x10000).substring(1, 5);
 		return "\\u" + hex;
 	}
@@ -181,33 +200,108 @@ public class ScalaTarget extends Target {
 		return getBadWords().contains(idNode.getText());
 	}
 
+	/**
+	 * Returns the value of a Scala target option. Options are read from the
+	 * grammar's {@code options} block (the lexer of a combined grammar sees the
+	 * combined grammar's options) and fall back to the {@code antlr4.<name>}
+	 * system property, which is the way to set build-wide options without
+	 * per-grammar warnings.
+	 */
+	protected String getTargetOption(Grammar g, String name) {
+		String value = g.getOptionString(name);
+		if (value == null && g instanceof LexerGrammar && ((LexerGrammar) g).implicitLexerOwner != null) {
+			value = ((LexerGrammar) g).implicitLexerOwner.getOptionString(name);
+		}
+		if (value != null) {
+			return value;
+		}
+
+		return System.getProperty("antlr4." + name);
+	}
+
+	/**
+	 * Returns the name of the template group (without extension) this target
+	 * renders with. All Scala flavours share the {@code Scala} template
+	 * directory, so subclasses only need to pick their group file.
+	 */
+	protected String getTemplateGroupName() {
+		return "Scala";
+	}
+
+	protected String getTemplateGroupFile() {
+		return CodeGenerator.TEMPLATE_ROOT + "/" + getLanguage() + "/"
+				+ getTemplateGroupName() + STGroup.GROUP_FILE_EXTENSION;
+	}
+
+	/**
+	 * Returns the template group of this target class, which is loaded once
+	 * and shared by all instances, so that generating many grammars in one
+	 * JVM (see {@link ScalaBatchGenerator}) parses the group file only once.
+	 */
 	@Override
 	protected STGroup loadTemplates() {
-		STGroup result = super.loadTemplates();
-		result.registerRenderer(String.class, new JavaStringRenderer(), true);
-		return result;
+		return ScalaTemplateGroup.get(this);
 	}
 	
 	@Override
 	protected void genFile(Grammar g, ST outputFileST, String fileName) {
-		if(fileName.toLowerCase().contains("parser")) {
+		final Map<String, Object> targetOptions = getTemplateOptions(g);
+		final boolean recognizerFile = outputFileST.getName().endsWith("ParserFile")
+				|| outputFileST.getName().endsWith("LexerFile");
+		if (recognizerFile && targetOptions.containsKey("atnResource")) {
+			writeSerializedATN(g, (String) targetOptions.get("atnResource"));
+		}
+		if (outputFileST.getName().endsWith("ParserFile") && targetOptions.containsKey("precedence")) {
+			applyPrecedenceClimbing(g, outputFileST);
+		}
+		if (outputFileST.getName().endsWith("ParserFile") && "json".equals(getTargetOption(g, "scalaDecisionReport"))) {
+			writeDecisionReport(g, outputFileST);
+		}
+
+		final GeneratedFileCache cache = getOutputCache(g);
+		String cacheKey = null;
+		if (cache != null) {
+			cacheKey = GeneratedFileCache.key(this, g, fileName, getTemplateGroupFile(), targetOptions);
+			try {
+				if (cache.restore(g, fileName, cacheKey)) {
+					getCodeGenerator().tool.log("scala-target", "reused " + fileName + " from output cache " + cacheKey);
+					return;
+				}
+			}
+			catch (IOException e) {
+				getCodeGenerator().tool.log("scala-target", "cannot read output cache entry " + cacheKey + ": " + e);
+			}
+		}
+
+		if(outputFileST.getAttributes().containsKey("targetOptions")) {
+			outputFileST.add("targetOptions", targetOptions);
+		}
+
+		if(outputFileST.getName().endsWith("ParserFile")) {
 			if(outputFileST.getAttributes().containsKey("namedActions")) {
 				final Object attr = outputFileST.getAttribute("namedActions");
 				if(attr instanceof Map) {
 					try {
-//						final Map<String,ScalaModel> map = ScalaModels.generate(g);
-//						for(Entry<String,ScalaModel> e : map.entrySet()) {
-//							System.out.println(e.getKey() + " = " + e.getValue() + "\n");
-//						}
-						List<ScalaCaseModel> model = ScalaCaseModel.generate(g);
-						for(ScalaCaseModel m : model) {
-							System.out.println(m + "\n");
+						((Map)attr).put("__MAGIC_SCALA_TARGET_MODEL__", getCaseModels(g));
+						final Set<String> astRules = new HashSet<String>();
+						if (targetOptions.containsKey("ast")) {
+							final List<ScalaASTFunction> functions = getASTFunctions(g);
+							for (ScalaASTFunction function : functions) {
+								astRules.add(function.getName());
+							}
+							((Map)attr).put("__MAGIC_SCALA_TARGET_AST__", functions);
+						}
+						((Map)attr).put("__MAGIC_SCALA_TARGET_STREAMS__", ScalaStreamRule.generate(g, astRules));
+						((Map)attr).put("__MAGIC_SCALA_TARGET_TOKEN_SETS__", getDecisionTables(g, outputFileST).getTokenSets());
+						((Map)attr).put("__MAGIC_SCALA_TARGET_START_RULES__", ScalaRecognizerPair.getStartRules(g));
+						final ScalaRecognizerPair pair = ScalaRecognizerPair.create(g);
+						if (pair != null) {
+							((Map)attr).put("__MAGIC_SCALA_TARGET_LEXER__", pair);
 						}
-
-						((Map)attr).put("__MAGIC_SCALA_TARGET_MODEL__", model);
 					}
 					catch(Exception e) {
-						e.printStackTrace();
+						getCodeGenerator().tool.errMgr.toolError(ErrorType.INTERNAL_ERROR, e,
+								"cannot build the Scala model of " + g.name + ": " + e);
 					}
 				}
 			}
@@ -215,65 +309,224 @@ public class ScalaTarget extends Target {
 
 		
 		super.genFile(g, outputFileST, fileName);
+
+		if (cache != null) {
+			try {
+				cache.store(g, fileName, cacheKey);
+			}
+			catch (IOException e) {
+				getCodeGenerator().tool.log("scala-target", "cannot write output cache entry " + cacheKey + ": " + e);
+			}
+		}
 	}
-	
-	private void tester(Grammar g) throws Exception {
-		
 
-//		final Set<Integer> visited = new HashSet<Integer>();
-		for (String ruleName : g.rules.keySet()) {
-			final Rule rule = g.rules.get(ruleName);
-			if (rule != null && rule.alt != null) {
-				System.out.print(ruleName + " = ");
-				for (Alternative alt : rule.alt) {
-					if(alt != null) {
-						if(alt.ast != null) {
-							tester(alt.ast);
-						}
-					}
-				}
-				System.out.println("\n");
+	/**
+	 * Returns the target options the templates see as {@code targetOptions}.
+	 * Only options that are switched on have an entry.
+	 */
+	protected Map<String, Object> getTemplateOptions(Grammar g) {
+		final Map<String, Object> options = new TreeMap<String, Object>();
+		if ("resource".equals(getTargetOption(g, "scalaATN"))) {
+			options.put("atnResource", g.getRecognizerName() + ".atn");
+		}
+		if ("direct".equals(getTargetOption(g, "scalaAST"))) {
+			options.put("ast", "direct");
+		}
+		if ("index".equals(getTargetOption(g, "scalaTerminals"))) {
+			options.put("terminalIndex", "index");
+		}
+		if ("arrays".equals(getTargetOption(g, "scalaTokens"))) {
+			options.put("tokenArrays", "arrays");
+		}
+		if ("counters".equals(getTargetOption(g, "scalaProfile"))) {
+			options.put("profile", "counters");
+		}
+		if ("failfast".equals(getTargetOption(g, "scalaErrors"))) {
+			options.put("failFast", "failfast");
+		}
+		if ("weak".equals(getTargetOption(g, "scalaIntern"))) {
+			options.put("intern", "weak");
+		}
+		if ("climbing".equals(getTargetOption(g, "scalaPrecedence"))) {
+			options.put("precedence", "climbing");
+		}
+		if ("typed".equals(getTargetOption(g, "scalaDispatch"))) {
+			if (getCodeGenerator().tool.gen_listener) {
+				options.put("typedListener", "typed");
+			}
+			if (getCodeGenerator().tool.gen_visitor) {
+				options.put("typedVisitor", "typed");
 			}
 		}
+
+		return options;
 	}
-	
-	private void tester(GrammarAST ast) {
-		if (ast instanceof RuleAST) {
-			RuleAST rule = (RuleAST) ast;
-			System.out.print(rule.getRuleName());
-		} else if (ast instanceof RuleRefAST) {
-			RuleRefAST ruleRef = (RuleRefAST) ast;
-			System.out.print(" " + ruleRef.getText());
-		} else if (ast instanceof AltAST) {
-			tester(ast.getChildren());
-			System.out.print(" | ");
-		} else if (ast instanceof StarBlockAST) {
-			System.out.print(" List[");
-			tester(ast.getChildren());
-			System.out.print("]");
-		} else if (ast instanceof PlusBlockAST) {
-			System.out.print(" NonEmptyList[");
-			tester(ast.getChildren());
-			System.out.print("]");
-		} else if (ast instanceof BlockAST) {
-			System.out.print(" (");
-			tester(ast.getChildren());
-			System.out.print(")");
-		} else if (ast instanceof OptionalBlockAST) {
-			System.out.print(" Option[");
-			tester(ast.getChildren());
-			System.out.print("]");
-		} else if (ast instanceof TerminalAST) {
-			// SKIP
-		} else {
-			System.out.println(ast.getClass());
+
+	/**
+	 * Writes the serialized ATN of {@code g} in the binary form read by
+	 * {@link SerializedATNResource} to {@link #getSerializedATNDirectory}.
+	 */
+	protected void writeSerializedATN(Grammar g, String resourceName) {
+		final Tool tool = getCodeGenerator().tool;
+		if (tool.outputDirectory == null) {
+			return;
+		}
+
+		final char[] data = ATNSerializer.getSerializedAsChars(g, g.atn);
+		final File file = new File(getSerializedATNDirectory(g), resourceName);
+		try {
+			file.getParentFile().mkdirs();
+			final FileChannel channel = new FileOutputStream(file).getChannel();
+			try {
+				SerializedATNResource.write(data, channel);
+			}
+			finally {
+				channel.close();
+			}
+		}
+		catch (IOException e) {
+			tool.errMgr.toolError(ErrorType.CANNOT_WRITE_FILE, e, file.getPath());
+		}
+	}
+
+	/**
+	 * Returns the directory the {@code .atn} resource of {@code g} goes to.
+	 * The recognizer loads it relative to its own package, so with
+	 * {@code -package} the package path is appended, unless the generated
+	 * sources are already laid out in package directories. The
+	 * {@code scalaATNDirectory} option names a resources root to use instead
+	 * of the output directory.
+	 */
+	protected File getSerializedATNDirectory(Grammar g) {
+		final Tool tool = getCodeGenerator().tool;
+		final String packagePath = tool.genPackage != null ? tool.genPackage.replace('.', File.separatorChar) : "";
+		final String resources = getTargetOption(g, "scalaATNDirectory");
+		if (resources != null) {
+			return new File(resources, packagePath);
+		}
+
+		final File directory = tool.getOutputDirectory(g.fileName);
+		if (packagePath.isEmpty() || directory.getPath().endsWith(File.separator + packagePath)) {
+			return directory;
+		}
+
+		return new File(directory, packagePath);
+	}
+
+	/**
+	 * Writes the decisions of the parser template tree {@code st} that are
+	 * predicted with {@code adaptivePredict} to a JSON report next to the
+	 * generated parser.
+	 */
+	protected void writeDecisionReport(Grammar g, ST st) {
+		final Tool tool = getCodeGenerator().tool;
+		if (tool.outputDirectory == null) {
+			return;
+		}
+
+		final ScalaDecisionReport report = new ScalaDecisionReport(g);
+		report.process(st);
+		final File file = new File(tool.getOutputDirectory(g.fileName), g.getRecognizerName() + ".decisions.json");
+		try {
+			file.getParentFile().mkdirs();
+			final Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				writer.write(report.toJSON());
+			}
+			finally {
+				writer.close();
+			}
+		}
+		catch (IOException e) {
+			tool.errMgr.toolError(ErrorType.CANNOT_WRITE_FILE, e, file.getPath());
+		}
+		tool.log("scala-target", report.getDecisions().size() + " decisions of " + g.getRecognizerName()
+				+ " are not LL(1), see " + file.getPath());
+	}
+
+	/**
+	 * Switches the operator loops of the left-recursive rules of the parser
+	 * template tree {@code st} to precedence climbing and reports the rules
+	 * that keep {@code adaptivePredict}.
+	 */
+	protected void applyPrecedenceClimbing(Grammar g, ST st) {
+		final ScalaPrecedenceClimbing climbing = new ScalaPrecedenceClimbing(g, this);
+		climbing.process(st);
+		for (String warning : climbing.getWarnings()) {
+			getCodeGenerator().tool.info(warning);
 		}
 	}
+
+	/**
+	 * Returns the output cache configured with the {@code scalaOutputCache}
+	 * option, or {@code null} when generated files should always be rendered.
+	 */
+	protected GeneratedFileCache getOutputCache(Grammar g) {
+		final String directory = getTargetOption(g, "scalaOutputCache");
+		if (directory == null || getCodeGenerator().tool.outputDirectory == null) {
+			return null;
+		}
+
+		return new GeneratedFileCache(new File(directory));
+	}
+
+	/**
+	 * Returns the case-class model of {@code g}, building it on first use.
+	 * Every case class is reported to the tool log (enabled with
+	 * {@code -Xlog}) when it is built.
+	 */
+	protected List<ScalaCaseModel> getCaseModels(Grammar g) {
+		List<ScalaCaseModel> model = caseModels.get(g);
+		if (model == null) {
+			model = ScalaCaseModel.generate(g, getModels(g));
+			for (ScalaCaseModel m : model) {
+				getCodeGenerator().tool.log("scala-target", m.toString());
+			}
+			caseModels.put(g, model);
+		}
+
+		return model;
+	}
+
+	/** Returns the model graph of {@code g}, creating it on first use. */
+	protected ScalaModels getModels(Grammar g) {
+		ScalaModels model = models.get(g);
+		if (model == null) {
+			model = new ScalaModels();
+			models.put(g, model);
+		}
+
+		return model;
+	}
 	
-	private void tester(List<? extends Object> asts) {
-		for(Object ast : asts) {
-			tester((GrammarAST)ast);
+	/**
+	 * Hoists the wide token sets of the parser template tree {@code st} and
+	 * reports the LL(1) matches that cannot compile to a switch.
+	 */
+	protected ScalaDecisionTables getDecisionTables(Grammar g, ST st) {
+		final ScalaDecisionTables tables = new ScalaDecisionTables(g);
+		tables.process(st);
+		for (String warning : tables.getWarnings()) {
+			getCodeGenerator().tool.info(warning);
 		}
+
+		return tables;
+	}
+
+	/**
+	 * Returns the functions that build the case-class AST directly, for the
+	 * {@code scalaAST=direct} option. The rules that get none are reported
+	 * to the tool.
+	 */
+	protected List<ScalaASTFunction> getASTFunctions(Grammar g) {
+		final List<ScalaASTFunction> functions = ScalaASTFunction.generate(g, getModels(g),
+				"index".equals(getTargetOption(g, "scalaTerminals")), "weak".equals(getTargetOption(g, "scalaIntern")));
+		for (Map.Entry<String, String> rule : ScalaASTFunction.unsupportedRules(g).entrySet()) {
+			getCodeGenerator().tool.info("scalaAST=direct skips rule " + rule.getKey() + " of " + g.name + ": "
+					+ rule.getValue());
+		}
+
+		return functions;
 	}
 
 	protected static class JavaStringRenderer extends StringRenderer {
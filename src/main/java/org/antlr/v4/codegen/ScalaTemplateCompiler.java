@@ -0,0 +1,54 @@
+package org.antlr.v4.codegen;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.stringtemplate.v4.STGroup;
+
+/**
+ * Precompiles the Scala template groups at build time. Every group file in
+ * the Scala template directory under the given classes directory is loaded
+ * and its compiled templates are written next to it, so the targets can
+ * skip parsing and compiling the group file when the tool starts. The build
+ * runs this after compiling the classes.
+ */
+public final class ScalaTemplateCompiler {
+
+	private ScalaTemplateCompiler() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("usage: ScalaTemplateCompiler <classes directory>");
+			System.exit(2);
+		}
+
+		final File directory = new File(args[0], CodeGenerator.TEMPLATE_ROOT + "/Scala");
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Cannot list " + directory);
+		}
+
+		for (File file : files) {
+			if (file.getName().endsWith(STGroup.GROUP_FILE_EXTENSION)) {
+				compile(file);
+			}
+		}
+	}
+
+	private static void compile(File groupFile) throws IOException {
+		final ScalaTemplateGroup group = new ScalaTemplateGroup(groupFile.getPath(), false);
+		group.load();
+
+		final File output = new File(groupFile.getPath() + ScalaTemplateGroup.COMPILED_SUFFIX);
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+		try {
+			group.writeCompiled(out);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,537 @@
+package org.antlr.v4.codegen;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.antlr.runtime.CommonToken;
+import org.antlr.v4.Tool;
+import org.antlr.v4.tool.ErrorType;
+import org.stringtemplate.v4.AttributeRenderer;
+import org.stringtemplate.v4.ModelAdaptor;
+import org.stringtemplate.v4.NumberRenderer;
+import org.stringtemplate.v4.ST;
+import org.stringtemplate.v4.STErrorListener;
+import org.stringtemplate.v4.STGroup;
+import org.stringtemplate.v4.STGroupFile;
+import org.stringtemplate.v4.compiler.CompiledST;
+import org.stringtemplate.v4.compiler.FormalArgument;
+import org.stringtemplate.v4.misc.ErrorManager;
+import org.stringtemplate.v4.misc.Interval;
+import org.stringtemplate.v4.misc.STMessage;
+
+/**
+ * The template group of a Scala target class, loaded once and shared by every
+ * target instance of that class, on any thread. All templates are compiled
+ * when the group is created; the maps ST still writes while rendering (missed
+ * template names and the per-type adaptor and renderer caches) are replaced by
+ * thread-safe ones. Template errors go to the tool that last asked for a group
+ * on the current thread, the way {@link Target}'s own listener reports them.
+ * <p/>
+ * The build stores the compiled templates of each group file next to it in
+ * a {@code .stg.bin} file (see {@link ScalaTemplateCompiler}), which is read
+ * instead of parsing the group file unless the group file is newer or the
+ * {@code antlr4.scalaTemplates} system property is {@code source}.
+ */
+final class ScalaTemplateGroup extends STGroupFile {
+
+	/** Appended to the name of a group file for the name of its compiled form. */
+	static final String COMPILED_SUFFIX = ".bin";
+
+	private static final int MAGIC = 0x53544743;
+
+	/** Bump whenever the layout written by {@link #writeCompiled} changes. */
+	private static final int FORMAT_VERSION = 1;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final ConcurrentMap<Class<?>, ScalaTemplateGroup> groups = new ConcurrentHashMap<Class<?>, ScalaTemplateGroup>();
+
+	private static final ThreadLocal<WeakReference<Tool>> currentTool = new ThreadLocal<WeakReference<Tool>>();
+
+	private final boolean precompiled;
+
+	ScalaTemplateGroup(String fileName, boolean precompiled) {
+		super(fileName);
+		this.precompiled = precompiled;
+		templates = new ConcurrentHashMap<String, CompiledST>();
+		typeToAdaptorCache = Collections.synchronizedMap(new LinkedHashMap<Class<?>, ModelAdaptor>());
+		typeToRendererCache = Collections.synchronizedMap(new LinkedHashMap<Class<?>, AttributeRenderer>());
+		setListener(new ToolListener());
+		registerRenderer(Integer.class, new NumberRenderer());
+		registerRenderer(String.class, new ScalaTarget.JavaStringRenderer(), true);
+	}
+
+	/** Returns the group of {@code target}'s class, loading it on first use. */
+	static ScalaTemplateGroup get(ScalaTarget target) {
+		currentTool.set(new WeakReference<Tool>(target.getCodeGenerator().tool));
+
+		ScalaTemplateGroup group = groups.get(target.getClass());
+		if (group == null) {
+			synchronized (groups) {
+				group = groups.get(target.getClass());
+				if (group == null) {
+					group = new ScalaTemplateGroup(target.getTemplateGroupFile(),
+							!"source".equals(System.getProperty("antlr4.scalaTemplates")));
+					group.load();
+					groups.put(target.getClass(), group);
+				}
+			}
+		}
+
+		return group;
+	}
+
+	@Override
+	public void load() {
+		if (alreadyLoaded) {
+			return;
+		}
+
+		final URL compiled = precompiled ? ScalaTemplateGroup.class.getClassLoader().getResource(fileName + COMPILED_SUFFIX) : null;
+		if (compiled != null && readCompiled(compiled)) {
+			alreadyLoaded = true;
+			return;
+		}
+
+		super.load();
+	}
+
+	@Override
+	public void unload() {
+		throw new UnsupportedOperationException("shared template groups cannot be unloaded");
+	}
+
+	/**
+	 * Writes every template of this group, with its bytecode, constants and
+	 * source map, and the dictionaries of the group in the form
+	 * {@link #readCompiled} reads.
+	 */
+	void writeCompiled(DataOutputStream out) throws IOException {
+		if (!getImportedGroups().isEmpty()) {
+			throw new IllegalArgumentException(fileName + " imports other groups, which cannot be precompiled");
+		}
+
+		final List<CompiledST> all = new ArrayList<CompiledST>();
+		final Map<CompiledST, Integer> ids = new IdentityHashMap<CompiledST, Integer>();
+		for (CompiledST code : templates.values()) {
+			collect(code, all, ids);
+		}
+
+		final Map<String, Integer> strings = new HashMap<String, Integer>();
+		final List<String> table = new ArrayList<String>();
+		for (String name : templates.keySet()) {
+			intern(name, strings, table);
+		}
+		for (CompiledST code : all) {
+			internStrings(code, strings, table);
+		}
+		for (Map.Entry<String, Map<String, Object>> dictionary : dictionaries.entrySet()) {
+			intern(dictionary.getKey(), strings, table);
+			for (Map.Entry<String, Object> entry : dictionary.getValue().entrySet()) {
+				intern(entry.getKey(), strings, table);
+				if (entry.getValue() instanceof String) {
+					intern((String) entry.getValue(), strings, table);
+				}
+			}
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(FORMAT_VERSION);
+		out.writeUTF(ST.VERSION);
+		out.writeChar(delimiterStartChar);
+		out.writeChar(delimiterStopChar);
+
+		out.writeInt(table.size());
+		for (String string : table) {
+			final byte[] bytes = string.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		out.writeInt(all.size());
+		for (CompiledST code : all) {
+			writeTemplate(out, code, ids, strings);
+		}
+
+		out.writeInt(templates.size());
+		for (Map.Entry<String, CompiledST> entry : templates.entrySet()) {
+			out.writeInt(strings.get(entry.getKey()));
+			out.writeInt(ids.get(entry.getValue()));
+		}
+
+		out.writeInt(dictionaries.size());
+		for (Map.Entry<String, Map<String, Object>> dictionary : dictionaries.entrySet()) {
+			out.writeInt(strings.get(dictionary.getKey()));
+			out.writeInt(dictionary.getValue().size());
+			for (Map.Entry<String, Object> entry : dictionary.getValue().entrySet()) {
+				out.writeInt(strings.get(entry.getKey()));
+				writeValue(out, entry.getValue(), strings);
+			}
+		}
+	}
+
+	private static void collect(CompiledST code, List<CompiledST> all, Map<CompiledST, Integer> ids) {
+		if (code == null || ids.containsKey(code)) {
+			return;
+		}
+
+		ids.put(code, all.size());
+		all.add(code);
+		if (code.implicitlyDefinedTemplates != null) {
+			for (CompiledST sub : code.implicitlyDefinedTemplates) {
+				collect(sub, all, ids);
+			}
+		}
+		if (code.formalArguments != null) {
+			for (FormalArgument arg : code.formalArguments.values()) {
+				collect(arg.compiledDefaultValue, all, ids);
+			}
+		}
+	}
+
+	private static void internStrings(CompiledST code, Map<String, Integer> strings, List<String> table) {
+		intern(code.name, strings, table);
+		intern(code.prefix, strings, table);
+		intern(code.template, strings, table);
+		if (code.strings != null) {
+			for (String string : code.strings) {
+				intern(string, strings, table);
+			}
+		}
+		if (code.formalArguments != null) {
+			for (FormalArgument arg : code.formalArguments.values()) {
+				intern(arg.name, strings, table);
+				if (arg.defaultValueToken != null) {
+					intern(arg.defaultValueToken.getText(), strings, table);
+				}
+				if (arg.defaultValue instanceof String) {
+					intern((String) arg.defaultValue, strings, table);
+				}
+			}
+		}
+	}
+
+	private static void intern(String string, Map<String, Integer> strings, List<String> table) {
+		if (string != null && !strings.containsKey(string)) {
+			strings.put(string, table.size());
+			table.add(string);
+		}
+	}
+
+	private static int index(String string, Map<String, Integer> strings) {
+		return string != null ? strings.get(string) : -1;
+	}
+
+	private static void writeTemplate(DataOutputStream out, CompiledST code, Map<CompiledST, Integer> ids,
+			Map<String, Integer> strings) throws IOException {
+		out.writeInt(index(code.name, strings));
+		out.writeInt(index(code.prefix, strings));
+		out.writeInt(index(code.template, strings));
+		out.writeBoolean(code.hasFormalArgs);
+		out.writeInt(code.numberOfArgsWithDefaultValues);
+		out.writeBoolean(code.isRegion);
+		out.writeInt(code.regionDefType != null ? code.regionDefType.ordinal() : -1);
+		out.writeBoolean(code.isAnonSubtemplate);
+
+		if (code.formalArguments == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(code.formalArguments.size());
+			for (FormalArgument arg : code.formalArguments.values()) {
+				out.writeInt(index(arg.name, strings));
+				out.writeInt(arg.index);
+				out.writeInt(arg.defaultValueToken != null ? arg.defaultValueToken.getType() : -1);
+				out.writeInt(arg.defaultValueToken != null ? index(arg.defaultValueToken.getText(), strings) : -1);
+				writeValue(out, arg.defaultValue, strings);
+				out.writeInt(arg.compiledDefaultValue != null ? ids.get(arg.compiledDefaultValue) : -1);
+			}
+		}
+
+		if (code.implicitlyDefinedTemplates == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(code.implicitlyDefinedTemplates.size());
+			for (CompiledST sub : code.implicitlyDefinedTemplates) {
+				out.writeInt(ids.get(sub));
+			}
+		}
+
+		if (code.strings == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(code.strings.length);
+			for (String string : code.strings) {
+				out.writeInt(index(string, strings));
+			}
+		}
+
+		// the bytecode and source map arrays are allocated with room to grow; only the first codeSize entries are used
+		out.writeInt(code.codeSize);
+		if (code.instrs == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(code.instrs.length);
+			out.write(code.instrs, 0, code.codeSize);
+		}
+
+		if (code.sourceMap == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(code.sourceMap.length);
+			for (int i = 0; i < code.codeSize; i++) {
+				final Interval interval = code.sourceMap[i];
+				out.writeBoolean(interval != null);
+				if (interval != null) {
+					out.writeInt(interval.a);
+					out.writeInt(interval.b);
+				}
+			}
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value, Map<String, Integer> strings) throws IOException {
+		if (value == null) {
+			out.writeByte(0);
+		} else if (value == STGroup.DICT_KEY) {
+			out.writeByte(1);
+		} else if (value instanceof String) {
+			out.writeByte(2);
+			out.writeInt(strings.get(value));
+		} else if (value instanceof Boolean) {
+			out.writeByte(((Boolean) value) ? 3 : 4);
+		} else if (value instanceof List && ((List<?>) value).isEmpty()) {
+			out.writeByte(5);
+		} else {
+			throw new IllegalArgumentException("cannot precompile the value " + value + " of " + value.getClass());
+		}
+	}
+
+	/**
+	 * Reads the templates and dictionaries written by {@link #writeCompiled}.
+	 * Returns {@code false}, leaving the group empty, when the group file is
+	 * newer than {@code compiled} or {@code compiled} cannot be read.
+	 */
+	private boolean readCompiled(URL compiled) {
+		try {
+			if (url != null && lastModified(url) > lastModified(compiled)) {
+				return false;
+			}
+
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(compiled.openStream()));
+			try {
+				return readCompiled(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private boolean readCompiled(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !ST.VERSION.equals(in.readUTF())) {
+			return false;
+		}
+
+		final char startChar = in.readChar();
+		final char stopChar = in.readChar();
+
+		final String[] table = new String[in.readInt()];
+		for (int i = 0; i < table.length; i++) {
+			final byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			table[i] = new String(bytes, UTF8);
+		}
+
+		final CompiledST[] all = new CompiledST[in.readInt()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = new CompiledST();
+		}
+		for (CompiledST code : all) {
+			readTemplate(in, code, all, table);
+		}
+
+		final Map<String, CompiledST> compiledTemplates = new HashMap<String, CompiledST>();
+		for (int i = in.readInt(); i > 0; i--) {
+			compiledTemplates.put(table[in.readInt()], all[in.readInt()]);
+		}
+
+		final Map<String, Map<String, Object>> compiledDictionaries = new HashMap<String, Map<String, Object>>();
+		for (int i = in.readInt(); i > 0; i--) {
+			final String name = table[in.readInt()];
+			final Map<String, Object> dictionary = new HashMap<String, Object>();
+			for (int j = in.readInt(); j > 0; j--) {
+				dictionary.put(table[in.readInt()], readValue(in, table));
+			}
+			compiledDictionaries.put(name, dictionary);
+		}
+
+		delimiterStartChar = startChar;
+		delimiterStopChar = stopChar;
+		templates.putAll(compiledTemplates);
+		dictionaries.putAll(compiledDictionaries);
+		return true;
+	}
+
+	private void readTemplate(DataInputStream in, CompiledST code, CompiledST[] all, String[] table) throws IOException {
+		code.nativeGroup = this;
+		code.name = string(in.readInt(), table);
+		code.prefix = string(in.readInt(), table);
+		code.template = string(in.readInt(), table);
+		code.hasFormalArgs = in.readBoolean();
+		code.numberOfArgsWithDefaultValues = in.readInt();
+		code.isRegion = in.readBoolean();
+		final int regionDefType = in.readInt();
+		code.regionDefType = regionDefType >= 0 ? ST.RegionType.values()[regionDefType] : null;
+		code.isAnonSubtemplate = in.readBoolean();
+
+		final int args = in.readInt();
+		if (args >= 0) {
+			code.formalArguments = new LinkedHashMap<String, FormalArgument>();
+			for (int i = 0; i < args; i++) {
+				final FormalArgument arg = new FormalArgument(string(in.readInt(), table));
+				arg.index = in.readInt();
+				final int tokenType = in.readInt();
+				final String tokenText = string(in.readInt(), table);
+				if (tokenType >= 0) {
+					arg.defaultValueToken = new CommonToken(tokenType, tokenText);
+				}
+				arg.defaultValue = readValue(in, table);
+				final int defaultTemplate = in.readInt();
+				arg.compiledDefaultValue = defaultTemplate >= 0 ? all[defaultTemplate] : null;
+				code.formalArguments.put(arg.name, arg);
+			}
+		}
+
+		final int subtemplates = in.readInt();
+		if (subtemplates >= 0) {
+			code.implicitlyDefinedTemplates = new ArrayList<CompiledST>(subtemplates);
+			for (int i = 0; i < subtemplates; i++) {
+				code.implicitlyDefinedTemplates.add(all[in.readInt()]);
+			}
+		}
+
+		final int strings = in.readInt();
+		if (strings >= 0) {
+			code.strings = new String[strings];
+			for (int i = 0; i < strings; i++) {
+				code.strings[i] = string(in.readInt(), table);
+			}
+		}
+
+		code.codeSize = in.readInt();
+		final int instrs = in.readInt();
+		if (instrs >= 0) {
+			code.instrs = new byte[instrs];
+			in.readFully(code.instrs, 0, code.codeSize);
+		} else {
+			code.instrs = null;
+		}
+
+		final int sourceMap = in.readInt();
+		if (sourceMap >= 0) {
+			code.sourceMap = new Interval[sourceMap];
+			for (int i = 0; i < code.codeSize; i++) {
+				if (in.readBoolean()) {
+					code.sourceMap[i] = new Interval(in.readInt(), in.readInt());
+				}
+			}
+		} else {
+			code.sourceMap = null;
+		}
+	}
+
+	private static String string(int index, String[] table) {
+		return index >= 0 ? table[index] : null;
+	}
+
+	private static Object readValue(DataInputStream in, String[] table) throws IOException {
+		final byte tag = in.readByte();
+		switch (tag) {
+		case 0:
+			return null;
+		case 1:
+			return STGroup.DICT_KEY;
+		case 2:
+			return table[in.readInt()];
+		case 3:
+			return Boolean.TRUE;
+		case 4:
+			return Boolean.FALSE;
+		case 5:
+			return Collections.emptyList();
+		default:
+			throw new IOException("unknown value tag " + tag);
+		}
+	}
+
+	/** The modification time of a file or jar entry, {@code 0} when unknown. */
+	private static long lastModified(URL url) throws IOException {
+		if ("file".equals(url.getProtocol())) {
+			try {
+				return new File(url.toURI()).lastModified();
+			} catch (URISyntaxException e) {
+				return 0;
+			}
+		}
+
+		final URLConnection connection = url.openConnection();
+		if (connection instanceof JarURLConnection) {
+			return ((JarURLConnection) connection).getJarEntry().getTime();
+		}
+
+		return connection.getLastModified();
+	}
+
+	private static final class ToolListener implements STErrorListener {
+
+		@Override
+		public void compileTimeError(STMessage msg) {
+			report(msg);
+		}
+
+		@Override
+		public void runTimeError(STMessage msg) {
+			report(msg);
+		}
+
+		@Override
+		public void IOError(STMessage msg) {
+			report(msg);
+		}
+
+		@Override
+		public void internalError(STMessage msg) {
+			report(msg);
+		}
+
+		private void report(STMessage msg) {
+			final WeakReference<Tool> ref = currentTool.get();
+			final Tool tool = ref != null ? ref.get() : null;
+			if (tool == null) {
+				ErrorManager.DEFAULT_ERROR_LISTENER.runTimeError(msg);
+				return;
+			}
+
+			tool.errMgr.toolError(ErrorType.STRING_TEMPLATE_WARNING, msg.cause, msg.toString());
+		}
+	}
+}
@@ -4,4 +4,9 @@ public class ScalazTarget extends ScalaTarget {
 	public ScalazTarget(CodeGenerator generator) {
 		super(generator);
 	}
+
+	@Override
+	protected String getTemplateGroupName() {
+		return "Scalaz";
+	}
 }
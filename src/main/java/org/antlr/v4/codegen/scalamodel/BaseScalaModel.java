@@ -1,6 +1,5 @@
 package org.antlr.v4.codegen.scalamodel;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -66,6 +65,16 @@ class BaseScalaModel implements ScalaModel {
 		return Collections.emptyList();
 	}
 
+	@Override
+	public String getChoiceName() {
+		return null;
+	}
+
+	@Override
+	public List<String> getAlternativeNames() {
+		return Collections.emptyList();
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -77,23 +86,7 @@ class BaseScalaModel implements ScalaModel {
 		}
 
 		if (isChoice()) {
-
-			final List<ScalaModel> ch = new ArrayList<ScalaModel>(getChoices());
-
-			if (!ch.isEmpty()) {
-				if (ch.size() == 1) {
-					builder.append(ch.get(0));
-				} else {
-					builder.append("Either[");
-					builder.append(join(ch.subList(0, ch.size() - 1), ",Either["));
-					builder.append(",");
-					builder.append(ch.get(ch.size() - 1));
-					for (int i = 0; i < ch.size() - 1; i++) {
-						builder.append("]");
-					}
-				}
-			}
-
+			builder.append(getChoiceName());
 		}
 
 		if (isContainer()) {
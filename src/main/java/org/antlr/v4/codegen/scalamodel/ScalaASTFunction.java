@@ -0,0 +1,416 @@
+package org.antlr.v4.codegen.scalamodel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.parse.ANTLRParser;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.PlusBlockStartState;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.atn.WildcardTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.tool.Alternative;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.Rule;
+import org.antlr.v4.tool.ast.AltAST;
+import org.antlr.v4.tool.ast.BlockAST;
+import org.antlr.v4.tool.ast.GrammarAST;
+import org.antlr.v4.tool.ast.OptionalBlockAST;
+import org.antlr.v4.tool.ast.PlusBlockAST;
+import org.antlr.v4.tool.ast.QuantifierAST;
+import org.antlr.v4.tool.ast.RuleRefAST;
+import org.antlr.v4.tool.ast.StarBlockAST;
+
+/**
+ * A parser rule compiled to a function that returns the rule's case class
+ * directly, for the {@code scalaAST=direct} mode. The function walks the
+ * rule's grammar AST exactly the way {@link ScalaModels} does, so every value
+ * it collects lands in the case-class parameter the model made for it.
+ * Elements the model has no place for (tokens, labeled elements) are matched
+ * but not kept. Embedded actions and predicates are not run.
+ */
+public class ScalaASTFunction {
+
+	private final String name;
+
+	private final int startState;
+
+	private final List<ScalaASTOp> ops;
+
+	private final String result;
+
+	private ScalaASTFunction(String name, int startState, List<ScalaASTOp> ops, String result) {
+		this.name = name;
+		this.startState = startState;
+		this.ops = ops;
+		this.result = result;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getStartState() {
+		return startState;
+	}
+
+	public List<ScalaASTOp> getOps() {
+		return ops;
+	}
+
+	/** The Scala expression that constructs the rule's case class. */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the AST function of every rule of {@code g} that is not in
+	 * {@link #unsupportedRules}, built on the model graph of {@code models}
+	 * so the parameters are the nodes of the case classes. With
+	 * {@code terminalIndex}, rules without values keep a {@code TokenSpan}
+	 * of their tokens instead of their text. With {@code intern}, every case
+	 * class is passed to the companion object's {@code intern} when it is
+	 * built.
+	 */
+	public static List<ScalaASTFunction> generate(Grammar g, ScalaModels models, boolean terminalIndex,
+			boolean intern) {
+		final Map<String, String> unsupported = unsupportedRules(g);
+		final List<ScalaASTFunction> functions = new ArrayList<ScalaASTFunction>();
+		for (Rule rule : g.rules.values()) {
+			if (!unsupported.containsKey(rule.name)) {
+				functions.add(new Builder(g, models, terminalIndex, intern).function(rule));
+			}
+		}
+
+		return functions;
+	}
+
+	/**
+	 * Returns the rules of {@code g} that get no AST function, each with the
+	 * reason: rules that take arguments, which this mode does not support,
+	 * and rules that refer to a rule without one.
+	 */
+	public static Map<String, String> unsupportedRules(Grammar g) {
+		final Map<String, String> unsupported = new LinkedHashMap<String, String>();
+		for (Rule rule : g.rules.values()) {
+			if (rule.args != null) {
+				unsupported.put(rule.name, "it takes arguments");
+			}
+		}
+
+		boolean changed = !unsupported.isEmpty();
+		while (changed) {
+			changed = false;
+			for (Rule rule : g.rules.values()) {
+				if (unsupported.containsKey(rule.name) || rule.ast == null) {
+					continue;
+				}
+				for (GrammarAST ref : rule.ast.getNodesWithType(ANTLRParser.RULE_REF)) {
+					if (unsupported.containsKey(ref.getText())) {
+						unsupported.put(rule.name, "it refers to " + ref.getText());
+						changed = true;
+						break;
+					}
+				}
+			}
+		}
+
+		return unsupported;
+	}
+
+	private static final class Builder {
+
+		private final Grammar g;
+
+		private final ScalaModels models;
+
+		private final boolean terminalIndex;
+
+		private final boolean intern;
+
+		private int nextVar = 0;
+
+		Builder(Grammar g, ScalaModels models, boolean terminalIndex, boolean intern) {
+			this.g = g;
+			this.models = models;
+			this.terminalIndex = terminalIndex;
+			this.intern = intern;
+		}
+
+		ScalaASTFunction function(Rule rule) {
+			final List<GrammarAST> alts = new ArrayList<GrammarAST>();
+			for (Alternative alt : rule.alt) {
+				if (alt != null && alt.ast != null) {
+					alts.add(alt.ast);
+				}
+			}
+
+			final ScalaModel model = models.choice(ScalaModels.block(rule));
+			final List<ScalaASTOp> ops = new ArrayList<ScalaASTOp>();
+			final String caseClass = ScalaModels.cap(rule.name) + "AST";
+			final String result;
+			if (model.isEmpty()) {
+				if (alts.size() == 1) {
+					alt(alts.get(0), ops);
+				} else {
+					choice((BlockAST) alts.get(0).getParent(), ops);
+				}
+				result = construct(caseClass, terminalIndex ? "TokenSpan(_start, _input.LT(-1))"
+						: "_input.getText(_start, _input.LT(-1))");
+			} else if (alts.size() == 1) {
+				// keep the values apart instead of building a tuple first
+				final List<String> values = new ArrayList<String>();
+				for (GrammarAST child : children(alts.get(0))) {
+					final String value = element(child, ops);
+					if (value != null) {
+						values.add(value);
+					}
+				}
+				result = construct(caseClass, join(values));
+			} else {
+				final String value = choice((BlockAST) alts.get(0).getParent(), ops);
+				if (model.isSequence()) {
+					final int size = model.getSequences().size();
+					final List<String> nulls = new ArrayList<String>();
+					final List<String> fields = new ArrayList<String>();
+					for (int i = 1; i <= size; i++) {
+						nulls.add(defaultValue(model.getSequences().get(i - 1)));
+						fields.add(value + "._" + i);
+					}
+					result = "if (" + value + " == null) " + construct(caseClass, join(nulls)) + " else "
+							+ construct(caseClass, join(fields));
+				} else {
+					result = construct(caseClass, value);
+				}
+			}
+
+			return new ScalaASTFunction(rule.name, g.atn.ruleToStartState[rule.index].stateNumber, ops, result);
+		}
+
+		/** Adds the ops of {@code ast} and returns the value it yields, if any. */
+		private String element(GrammarAST ast, List<ScalaASTOp> ops) {
+			if (ast instanceof RuleRefAST) {
+				final String var = newVar();
+				ops.add(ScalaASTOp.rule(ast.atnState.stateNumber, ast.getText(), var));
+				return var;
+			} else if (ast instanceof AltAST) {
+				return alt(ast, ops);
+			} else if (ast instanceof BlockAST) {
+				return choice((BlockAST) ast, ops);
+			} else if (ast instanceof StarBlockAST) {
+				return star((StarBlockAST) ast, ops);
+			} else if (ast instanceof PlusBlockAST) {
+				return plus((PlusBlockAST) ast, ops);
+			} else if (ast instanceof OptionalBlockAST) {
+				return optional((OptionalBlockAST) ast, ops);
+			} else if (ast.getType() == ANTLRParser.ASSIGN || ast.getType() == ANTLRParser.PLUS_ASSIGN) {
+				// the model has no place for labeled elements
+				element((GrammarAST) ast.getChild(1), ops);
+				return null;
+			} else if (ast.getType() == ANTLRParser.NOT) {
+				match((GrammarAST) ast.getChild(0), ops);
+				return null;
+			} else if (ast.atnState != null) {
+				match(ast, ops);
+				return null;
+			}
+
+			return null;
+		}
+
+		private void match(GrammarAST ast, List<ScalaASTOp> ops) {
+			final ATNState state = ast.atnState;
+			if (state == null || state.getNumberOfTransitions() == 0) {
+				return;
+			}
+
+			final Transition t = state.transition(0);
+			if (t instanceof WildcardTransition) {
+				ops.add(ScalaASTOp.wildcard(state.stateNumber));
+				return;
+			}
+
+			final IntervalSet set = t.label();
+			if (set == null) {
+				return;
+			}
+
+			if (t instanceof NotSetTransition || set.size() != 1) {
+				ops.add(ScalaASTOp.set(state.stateNumber, set.toList(), t instanceof NotSetTransition));
+			} else {
+				ops.add(ScalaASTOp.token(state.stateNumber, set.getSingleElement()));
+			}
+		}
+
+		private String alt(GrammarAST alt, List<ScalaASTOp> ops) {
+			return tuple(altValues(alt, ops));
+		}
+
+		private List<String> altValues(GrammarAST alt, List<ScalaASTOp> ops) {
+			final List<String> values = new ArrayList<String>();
+			for (GrammarAST child : children(alt)) {
+				final String value = element(child, ops);
+				if (value != null) {
+					values.add(value);
+				}
+			}
+			return values;
+		}
+
+		private static String tuple(List<String> values) {
+			if (values.isEmpty()) {
+				return null;
+			} else if (values.size() == 1) {
+				return values.get(0);
+			}
+			return "(" + join(values) + ")";
+		}
+
+		private String choice(BlockAST block, List<ScalaASTOp> ops) {
+			final List<GrammarAST> alts = children(block);
+			if (alts.size() == 1) {
+				return alt(alts.get(0), ops);
+			}
+
+			final ScalaModel model = models.generate(block);
+			final List<ScalaASTOp.Alt> choiceAlts = alts(alts, model, 1, null);
+			final String var = model.isEmpty() ? null : newVar();
+			ops.add(ScalaASTOp.choice(block.atnState.stateNumber, ((DecisionState) block.atnState).decision, var,
+					model, choiceAlts, false));
+			return var;
+		}
+
+		private String optional(OptionalBlockAST optional, List<ScalaASTOp> ops) {
+			final BlockAST block = (BlockAST) optional.getChild(0);
+			final ScalaModel model = models.generate(optional);
+			final int offset = ((QuantifierAST) optional).isGreedy() ? 1 : 2;
+			final List<ScalaASTOp.Alt> alts = alts(children(block), models.generate(block), offset, "Some");
+			final String var = model.isEmpty() ? null : newVar();
+			ops.add(ScalaASTOp.choice(optional.atnState.stateNumber, ((DecisionState) optional.atnState).decision,
+					var, model, alts, true));
+			return var;
+		}
+
+		private String star(StarBlockAST star, List<ScalaASTOp> ops) {
+			final StarLoopEntryState entry = (StarLoopEntryState) star.atnState;
+			final BlockAST block = (BlockAST) star.getChild(0);
+			final ScalaModel element = models.generate(block);
+			final List<ScalaASTOp> body = new ArrayList<ScalaASTOp>();
+			final String value = choice(block, body);
+			final String var = element.isEmpty() ? null : newVar();
+			ops.add(ScalaASTOp.star(entry.stateNumber, entry.loopBackState.stateNumber, entry.decision,
+					((QuantifierAST) star).isGreedy() ? 1 : 2, var, newVar("_alt"), newVar("_buffer"), element,
+					new ScalaASTOp.Alt(1, body, value)));
+			return var;
+		}
+
+		private String plus(PlusBlockAST plus, List<ScalaASTOp> ops) {
+			final PlusBlockStartState start = (PlusBlockStartState) plus.atnState;
+			final BlockAST block = (BlockAST) plus.getChild(0);
+			final ScalaModel element = models.generate(block);
+			final List<GrammarAST> children = children(block);
+			final boolean greedy = ((QuantifierAST) plus).isGreedy();
+			final List<ScalaASTOp.Alt> alts = alts(children, element, greedy ? 1 : 2, null);
+			final String var = element.isEmpty() ? null : newVar();
+			ops.add(ScalaASTOp.plus(start.stateNumber, start.loopBackState.stateNumber, start.loopBackState.decision,
+					greedy ? children.size() + 1 : 1, var, newVar("_alt"), newVar("_buffer"), element, alts));
+			return var;
+		}
+
+		/**
+		 * Builds the alternatives of a block whose values have the type of the
+		 * choice {@code model}: with two or more alternatives that carry a
+		 * value, each constructs the case class of its alternative in the
+		 * choice's sealed trait.
+		 */
+		private List<ScalaASTOp.Alt> alts(List<GrammarAST> alts, ScalaModel model, int firstNumber, String wrap) {
+			final List<List<ScalaASTOp>> ops = new ArrayList<List<ScalaASTOp>>();
+			final List<List<String>> values = new ArrayList<List<String>>();
+			int valued = 0;
+			for (GrammarAST alt : alts) {
+				final List<ScalaASTOp> altOps = new ArrayList<ScalaASTOp>();
+				final List<String> altValues = altValues(alt, altOps);
+				ops.add(altOps);
+				values.add(altValues);
+				if (!altValues.isEmpty()) {
+					valued++;
+				}
+			}
+
+			final List<ScalaASTOp.Alt> result = new ArrayList<ScalaASTOp.Alt>();
+			int index = 0;
+			for (int i = 0; i < alts.size(); i++) {
+				String value = tuple(values.get(i));
+				String altWrap = wrap;
+				if (model.isEmpty()) {
+					value = null;
+				} else if (value == null && wrap != null) {
+					// the wrapped value is an Option this alternative has nothing for
+					value = "None";
+					altWrap = null;
+				} else if (value == null) {
+					value = valued == 1 ? defaultValue(model) : "null";
+				} else if (valued > 1) {
+					value = construct(model.getAlternativeNames().get(index) + "AST", join(values.get(i)));
+					index++;
+				}
+
+				if (value != null && altWrap != null) {
+					value = altWrap + "(" + value + ")";
+				}
+				result.add(new ScalaASTOp.Alt(firstNumber + i, ops.get(i), value));
+			}
+
+			return result;
+		}
+
+		private List<GrammarAST> children(GrammarAST ast) {
+			final List<GrammarAST> children = new ArrayList<GrammarAST>();
+			if (ast.getChildren() != null) {
+				for (Object child : ast.getChildren()) {
+					children.add((GrammarAST) child);
+				}
+			}
+			return children;
+		}
+
+		private String defaultValue(ScalaModel model) {
+			if (model.isOption()) {
+				return "None";
+			} else if (model.isList()) {
+				return "Nil";
+			}
+			return "null";
+		}
+
+		/** The expression that builds the case class {@code caseClass} from {@code args}. */
+		private String construct(String caseClass, String args) {
+			final String value = caseClass + "(" + args + ")";
+			return intern ? "intern(" + value + ")" : value;
+		}
+
+		private String newVar() {
+			return newVar("_v");
+		}
+
+		private String newVar(String prefix) {
+			return prefix + nextVar++;
+		}
+
+		private static String join(List<String> values) {
+			final StringBuilder builder = new StringBuilder();
+			for (String value : values) {
+				if (builder.length() > 0) {
+					builder.append(", ");
+				}
+				builder.append(value);
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package org.antlr.v4.codegen.scalamodel;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One step of a rule function that builds the case-class AST directly. The
+ * templates render an op by asking which kind it is, the same way
+ * {@code caseClassType} asks a {@link ScalaModel}. Values are held in Scala
+ * vals named by {@link #getVar()}; ops that produce nothing the case class
+ * keeps have no var.
+ */
+public class ScalaASTOp {
+
+	private enum Kind {
+		TOKEN, SET, WILDCARD, RULE, CHOICE, STAR, PLUS
+	}
+
+	/** An alternative of a choice or a {@code +} loop. */
+	public static class Alt {
+
+		private final int number;
+
+		private final List<ScalaASTOp> ops;
+
+		private final String value;
+
+		Alt(int number, List<ScalaASTOp> ops, String value) {
+			this.number = number;
+			this.ops = ops;
+			this.value = value;
+		}
+
+		public int getNumber() {
+			return number;
+		}
+
+		public List<ScalaASTOp> getOps() {
+			return ops;
+		}
+
+		/** The Scala expression the alternative yields, or {@code null}. */
+		public String getValue() {
+			return value;
+		}
+	}
+
+	private final Kind kind;
+
+	private final int stateNumber;
+
+	private int tokenType;
+
+	private List<Integer> tokenTypes = Collections.emptyList();
+
+	private boolean invert;
+
+	private String ruleName;
+
+	private String var;
+
+	private String loopVar;
+
+	private String bufferVar;
+
+	private int decision;
+
+	private int loopBackStateNumber;
+
+	private int loopAlt;
+
+	private boolean optional;
+
+	private ScalaModel model;
+
+	private List<Alt> alts = Collections.emptyList();
+
+	private ScalaASTOp(Kind kind, int stateNumber) {
+		this.kind = kind;
+		this.stateNumber = stateNumber;
+	}
+
+	static ScalaASTOp token(int stateNumber, int tokenType) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.TOKEN, stateNumber);
+		op.tokenType = tokenType;
+		return op;
+	}
+
+	static ScalaASTOp set(int stateNumber, List<Integer> tokenTypes, boolean invert) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.SET, stateNumber);
+		op.tokenTypes = tokenTypes;
+		op.invert = invert;
+		return op;
+	}
+
+	static ScalaASTOp wildcard(int stateNumber) {
+		return new ScalaASTOp(Kind.WILDCARD, stateNumber);
+	}
+
+	static ScalaASTOp rule(int stateNumber, String ruleName, String var) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.RULE, stateNumber);
+		op.ruleName = ruleName;
+		op.var = var;
+		return op;
+	}
+
+	/**
+	 * A block predicted by {@code decision}. An optional block yields
+	 * {@code None} (or nothing) when no alternative is taken.
+	 */
+	static ScalaASTOp choice(int stateNumber, int decision, String var, ScalaModel model, List<Alt> alts,
+			boolean optional) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.CHOICE, stateNumber);
+		op.decision = decision;
+		op.var = var;
+		op.model = model;
+		op.alts = alts;
+		op.optional = optional;
+		return op;
+	}
+
+	/**
+	 * A {@code *} loop that runs the single alternative while the loop
+	 * decision predicts {@code loopAlt}. {@code model} is the element type.
+	 */
+	static ScalaASTOp star(int stateNumber, int loopBackStateNumber, int decision, int loopAlt, String var,
+			String loopVar, String bufferVar, ScalaModel model, Alt body) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.STAR, stateNumber);
+		op.loopBackStateNumber = loopBackStateNumber;
+		op.decision = decision;
+		op.loopAlt = loopAlt;
+		op.var = var;
+		op.loopVar = loopVar;
+		op.bufferVar = bufferVar;
+		op.model = model;
+		op.alts = Collections.singletonList(body);
+		return op;
+	}
+
+	/**
+	 * A {@code +} loop; the loop-back decision picks the alternative of every
+	 * iteration and predicts {@code loopAlt} to leave.
+	 */
+	static ScalaASTOp plus(int stateNumber, int loopBackStateNumber, int decision, int loopAlt, String var,
+			String loopVar, String bufferVar, ScalaModel model, List<Alt> alts) {
+		final ScalaASTOp op = new ScalaASTOp(Kind.PLUS, stateNumber);
+		op.loopBackStateNumber = loopBackStateNumber;
+		op.decision = decision;
+		op.loopAlt = loopAlt;
+		op.var = var;
+		op.loopVar = loopVar;
+		op.bufferVar = bufferVar;
+		op.model = model;
+		op.alts = alts;
+		return op;
+	}
+
+	public boolean isToken() {
+		return kind == Kind.TOKEN;
+	}
+
+	public boolean isSet() {
+		return kind == Kind.SET;
+	}
+
+	public boolean isWildcard() {
+		return kind == Kind.WILDCARD;
+	}
+
+	public boolean isRule() {
+		return kind == Kind.RULE;
+	}
+
+	public boolean isChoice() {
+		return kind == Kind.CHOICE;
+	}
+
+	public boolean isStar() {
+		return kind == Kind.STAR;
+	}
+
+	public boolean isPlus() {
+		return kind == Kind.PLUS;
+	}
+
+	public int getStateNumber() {
+		return stateNumber;
+	}
+
+	public int getTokenType() {
+		return tokenType;
+	}
+
+	public List<Integer> getTokenTypes() {
+		return tokenTypes;
+	}
+
+	public boolean isInvert() {
+		return invert;
+	}
+
+	public String getRuleName() {
+		return ruleName;
+	}
+
+	public String getVar() {
+		return var;
+	}
+
+	public String getLoopVar() {
+		return loopVar;
+	}
+
+	public String getBufferVar() {
+		return bufferVar;
+	}
+
+	public int getDecision() {
+		return decision;
+	}
+
+	public int getLoopBackStateNumber() {
+		return loopBackStateNumber;
+	}
+
+	public int getLoopAlt() {
+		return loopAlt;
+	}
+
+	public boolean isOptional() {
+		return optional;
+	}
+
+	public ScalaModel getModel() {
+		return model;
+	}
+
+	public List<Alt> getAlts() {
+		return alts;
+	}
+}
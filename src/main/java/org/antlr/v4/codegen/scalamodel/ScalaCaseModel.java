@@ -1,6 +1,7 @@
 package org.antlr.v4.codegen.scalamodel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -10,13 +11,40 @@ import org.antlr.v4.tool.Grammar;
 
 public class ScalaCaseModel {
 
+	/**
+	 * The sealed trait of a choice, with a final case class for each
+	 * alternative that carries a value.
+	 */
+	public static class Sum {
+
+		private final String name;
+
+		private final List<ScalaCaseModel> alternatives;
+
+		Sum(String name, List<ScalaCaseModel> alternatives) {
+			this.name = name;
+			this.alternatives = alternatives;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public List<ScalaCaseModel> getAlternatives() {
+			return alternatives;
+		}
+	}
+
 	private final String caseName;
 
 	private final Map<String, ScalaModel> params;
 
-	private ScalaCaseModel(String caseName, Map<String, ScalaModel> params) {
+	private final List<Sum> sums;
+
+	private ScalaCaseModel(String caseName, Map<String, ScalaModel> params, List<Sum> sums) {
 		this.caseName = caseName;
 		this.params = params;
+		this.sums = sums;
 	}
 
 	public String getCaseName() {
@@ -27,6 +55,11 @@ public class ScalaCaseModel {
 		return params;
 	}
 
+	/** The choices of the parameters, nested ones included. */
+	public List<Sum> getSums() {
+		return sums;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -34,6 +67,26 @@ public class ScalaCaseModel {
 		builder.append("case class ");
 		builder.append(caseName);
 		builder.append(" (");
+		appendParams(builder);
+		builder.append(")");
+
+		for (Sum sum : sums) {
+			builder.append("\nsealed trait ");
+			builder.append(sum.name);
+			for (ScalaCaseModel alternative : sum.alternatives) {
+				builder.append("\nfinal case class ");
+				builder.append(alternative.caseName);
+				builder.append(" (");
+				alternative.appendParams(builder);
+				builder.append(") extends ");
+				builder.append(sum.name);
+			}
+		}
+
+		return builder.toString();
+	}
+
+	private void appendParams(StringBuilder builder) {
 
 		boolean first = true;
 		for (Entry<String, ScalaModel> entry : params.entrySet()) {
@@ -45,14 +98,11 @@ public class ScalaCaseModel {
 			builder.append(entry.getValue());
 			first = false;
 		}
-
-		builder.append(")");
-
-		return builder.toString();
 	}
 
-	public static List<ScalaCaseModel> generate(Grammar g) throws Exception {
-		Map<String, ScalaModel> modelMap = ScalaModels.generate(g);
+	/** Returns the case class of every rule of {@code g}, built from the model graph of {@code models}. */
+	public static List<ScalaCaseModel> generate(Grammar g, ScalaModels models) {
+		Map<String, ScalaModel> modelMap = models.rules(g);
 
 		List<ScalaCaseModel> caseModels = new ArrayList<ScalaCaseModel>(modelMap.size());
 		for (Entry<String, ScalaModel> e : modelMap.entrySet()) {
@@ -63,6 +113,17 @@ public class ScalaCaseModel {
 	}
 
 	private static ScalaCaseModel generate(String name, ScalaModel model) {
+		final Map<String, ScalaModel> paramMap = params(model);
+
+		final Map<String, Sum> sums = new LinkedHashMap<String, Sum>();
+		for (ScalaModel param : paramMap.values()) {
+			sums(param, sums);
+		}
+
+		return new ScalaCaseModel(name, paramMap, new ArrayList<Sum>(sums.values()));
+	}
+
+	private static Map<String, ScalaModel> params(ScalaModel model) {
 		final Map<String, ScalaModel> paramMap = new LinkedHashMap<String, ScalaModel>();
 
 		if (model.isEmpty()) {
@@ -84,7 +145,28 @@ public class ScalaCaseModel {
 			paramMap.put(name(model), model);
 		}
 
-		return new ScalaCaseModel(name, paramMap);
+		return paramMap;
+	}
+
+	private static void sums(ScalaModel model, Map<String, Sum> sums) {
+		if (model.isChoice() && !sums.containsKey(model.getChoiceName())) {
+			final List<ScalaCaseModel> alternatives = new ArrayList<ScalaCaseModel>();
+			for (int i = 0; i < model.getChoices().size(); i++) {
+				alternatives.add(new ScalaCaseModel(model.getAlternativeNames().get(i), params(model.getChoices().get(i)),
+						Collections.<Sum> emptyList()));
+			}
+			sums.put(model.getChoiceName(), new Sum(model.getChoiceName(), alternatives));
+		}
+
+		if (model.isContainer()) {
+			sums(model.getContained(), sums);
+		}
+		for (ScalaModel sm : model.getSequences()) {
+			sums(sm, sums);
+		}
+		for (ScalaModel sm : model.getChoices()) {
+			sums(sm, sums);
+		}
 	}
 
 	private static String name(ScalaModel model) {
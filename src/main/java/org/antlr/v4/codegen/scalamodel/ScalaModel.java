@@ -30,6 +30,12 @@ public interface ScalaModel {
 	
 	List<ScalaModel> getChoices();
 	
+	/** The name of the sealed trait of a choice, without the {@code AST} suffix. */
+	String getChoiceName();
+	
+	/** The names of the case classes of {@link #getChoices()}, in order. */
+	List<String> getAlternativeNames();
+	
 //	List<ScalaModel> getComplexChoices();
 //	
 //	Set<ScalaModel> getLocalRuleChoices();
@@ -2,11 +2,13 @@ package org.antlr.v4.codegen.scalamodel;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.antlr.v4.tool.Alternative;
+import org.antlr.v4.parse.ANTLRParser;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.Rule;
 import org.antlr.v4.tool.ast.AltAST;
@@ -18,32 +20,57 @@ import org.antlr.v4.tool.ast.RuleAST;
 import org.antlr.v4.tool.ast.RuleRefAST;
 import org.antlr.v4.tool.ast.StarBlockAST;
 
+/**
+ * Builds the {@link ScalaModel} graph of a grammar. Nodes are hash-consed:
+ * while one grammar is being modelled, structurally equal nodes are the same
+ * instance. The model of each grammar AST node is remembered, so every pass
+ * over the grammar with the same instance (the case classes, then the
+ * {@code scalaAST=direct} functions) shares one graph.
+ * <p>
+ * A block with two or more alternatives that carry a value becomes a choice
+ * named after its place in the rule: {@code ValueChoice} for the alternatives
+ * of rule {@code value}, {@code ValueChoice2} for its second nested block.
+ * Each alternative is named by its label, or else by its number, as in
+ * {@code ValueAlt3} and {@code ValueChoice2Alt1}.
+ */
 public class ScalaModels {
 
 	private enum ContainerType {
 		LIST, NELIST, OPTION
 	}
 
-	private static final ScalaModel EMPTY = new BaseScalaModel() {
-		public boolean isEmpty() {
-			return true;
+	private static final ScalaModel EMPTY = new EmptyScalaModel();
+
+	private final Map<ScalaModel, ScalaModel> interned = new HashMap<ScalaModel, ScalaModel>();
+
+	private final Map<GrammarAST, ScalaModel> modelled = new IdentityHashMap<GrammarAST, ScalaModel>();
+
+	public ScalaModels() {
+	}
+
+	private ScalaModel intern(ScalaModel model) {
+		final ScalaModel existing = interned.get(model);
+		if (existing != null) {
+			return existing;
 		}
-	};
 
-	private static final List<ScalaModel> EMPTIES = Collections.singletonList(EMPTY);
+		interned.put(model, model);
+		return model;
+	}
 
-	static List<ScalaModel> list(List<? extends Object> asts) {
+	List<ScalaModel> list(List<? extends Object> asts) {
 
 		final List<ScalaModel> list = new ArrayList<ScalaModel>();
 
 		for (Object ast : asts) {
 			if (ast != null) {
-				list.add(generate((GrammarAST) ast));
+				final ScalaModel model = generate((GrammarAST) ast);
+				if (!model.isEmpty()) {
+					list.add(model);
+				}
 			}
 		}
 
-		list.removeAll(EMPTIES);
-
 		return Collections.unmodifiableList(list);
 	}
 
@@ -51,119 +78,144 @@ public class ScalaModels {
 		return EMPTY;
 	}
 
-	static ScalaModel choice(List<? extends Object> asts) {
+	ScalaModel choice(BlockAST block) {
+		ScalaModel model = modelled.get(block);
+		if (model == null) {
+			model = newChoice(block);
+			modelled.put(block, model);
+		}
 
-		final List<ScalaModel> list = list(asts);
+		return model;
+	}
+
+	private ScalaModel newChoice(BlockAST block) {
+
+		final List<ScalaModel> list = new ArrayList<ScalaModel>();
+		final List<String> names = new ArrayList<String>();
+
+		final String name = choiceName(block);
+		for (int i = 0; i < block.getChildCount(); i++) {
+			final ScalaModel model = generate((GrammarAST) block.getChild(i));
+			if (!model.isEmpty()) {
+				list.add(model);
+				names.add(alternativeName(block, name, i));
+			}
+		}
 
 		if (list.isEmpty()) {
 			return empty();
+		} else if (list.size() == 1) {
+			return list.get(0);
 		} else {
-			if (list.size() == 1) {
-				return list.get(0);
-			} else {
-				return new BaseScalaModel() {
-					@Override
-					public boolean isChoice() {
-						return true;
-					}
-
-					@Override
-					public List<ScalaModel> getChoices() {
-						return Collections.unmodifiableList(list);
-					}
-				};
+			return intern(new ChoiceScalaModel(name, Collections.unmodifiableList(list),
+					Collections.unmodifiableList(names)));
+		}
+	}
+
+	private String choiceName(BlockAST block) {
+		final RuleAST rule = (RuleAST) block.getAncestor(ANTLRParser.RULE);
+		final String name = cap(rule.getRuleName()) + "Choice";
+		if (block.getParent() == rule) {
+			return name;
+		}
+
+		final List<BlockAST> blocks = new ArrayList<BlockAST>();
+		for (Object child : rule.getChildren()) {
+			if (child instanceof BlockAST) {
+				for (Object alt : ((BlockAST) child).getChildren()) {
+					nestedBlocks((GrammarAST) alt, blocks);
+				}
 			}
 		}
+
+		return name + (blocks.indexOf(block) + 1);
+	}
+
+	private static void nestedBlocks(GrammarAST ast, List<BlockAST> blocks) {
+		if (ast instanceof BlockAST && ast.getChildCount() > 1) {
+			blocks.add((BlockAST) ast);
+		}
+
+		for (int i = 0; i < ast.getChildCount(); i++) {
+			nestedBlocks((GrammarAST) ast.getChild(i), blocks);
+		}
 	}
 
-	static ScalaModel sequence(List<? extends Object> asts) {
+	/** Names alternative {@code i} of {@code block}, by its label if no other alternative shares it. */
+	private String alternativeName(BlockAST block, String choiceName, int i) {
+		final GrammarAST label = block.getChild(i) instanceof AltAST ? ((AltAST) block.getChild(i)).altLabel : null;
+		if (label != null) {
+			int uses = 0;
+			for (Object alt : block.getChildren()) {
+				if (alt instanceof AltAST && ((AltAST) alt).altLabel != null
+						&& ((AltAST) alt).altLabel.getText().equals(label.getText())) {
+					uses++;
+				}
+			}
+			if (uses == 1) {
+				return cap(label.getText());
+			}
+		}
+
+		final String prefix = block.getParent() instanceof RuleAST
+				? cap(((RuleAST) block.getParent()).getRuleName()) : choiceName;
+		return prefix + "Alt" + (i + 1);
+	}
+
+	static BlockAST block(Rule rule) {
+		return (BlockAST) rule.ast.getFirstChildWithType(ANTLRParser.BLOCK);
+	}
+
+	static String cap(String name) {
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	ScalaModel sequence(List<? extends Object> asts) {
 
 		final List<ScalaModel> list = list(asts);
 
 		if (list.isEmpty()) {
 			return empty();
+		} else if (list.size() == 1) {
+			return list.get(0);
 		} else {
-			if (list.size() == 1) {
-				return list.get(0);
-			} else {
-				return new BaseScalaModel() {
-					@Override
-					public boolean isSequence() {
-						return true;
-					}
-
-					@Override
-					public List<ScalaModel> getSequences() {
-						return Collections.unmodifiableList(list);
-					}
-				};
-			}
+			return intern(new SequenceScalaModel(list));
 		}
 	}
 
-	static ScalaModel container(ContainerType type, GrammarAST ast) {
+	ScalaModel container(ContainerType type, GrammarAST ast) {
 		final ScalaModel contained = sequence(ast.getChildren());
 
 		if (contained.isEmpty()) {
 			return empty();
 		} else {
-
-			class ContainerScalaModel extends BaseScalaModel {
-				
-				@Override
-				public boolean isContainer() {
-					return true;
-				}
-				@Override
-				public ScalaModel getContained() {
-					return contained;
-				}
-			}
-
-			switch (type) {
-			case LIST:
-				return new ContainerScalaModel() {
-					public boolean isList() {
-						return true;
-					}
-				};
-
-			case NELIST:
-				return new ContainerScalaModel() {
-					public boolean isNonEmptyList() {
-						return true;
-					}
-				};
-
-			case OPTION:
-				return new ContainerScalaModel() {
-					public boolean isOption() {
-						return true;
-					}
-				};
-			default:
-				throw new UnsupportedOperationException(type.toString());
-			}
+			return intern(new ContainerScalaModel(type, contained));
 		}
 	}
 
-	static ScalaModel rule(final String name) {
+	ScalaModel rule(final String name) {
 		if (name == null) {
 			return empty();
 		} else {
-			return new BaseScalaModel() {
-				public boolean isRule() {
-					return true;
-				}
+			return intern(new RuleScalaModel(name));
+		}
+	}
 
-				public String getRuleName() {
-					return name;
-				}
-			};
+	ScalaModel generate(GrammarAST ast) {
+		if (ast instanceof BlockAST) {
+			return choice((BlockAST) ast);
+		}
+
+		ScalaModel model = modelled.get(ast);
+		if (model == null) {
+			model = newModel(ast);
+			modelled.put(ast, model);
 		}
+
+		return model;
 	}
 
-	private static ScalaModel generate(GrammarAST ast) {
+	private ScalaModel newModel(GrammarAST ast) {
 		if (ast instanceof RuleAST) {
 			RuleAST rule = (RuleAST) ast;
 			return rule(rule.getRuleName());
@@ -171,8 +223,6 @@ public class ScalaModels {
 			return rule(ast.getText());
 		} else if (ast instanceof AltAST) {
 			return sequence(ast.getChildren());
-		} else if (ast instanceof BlockAST) {
-			return choice(ast.getChildren());
 		} else if (ast instanceof StarBlockAST) {
 			return container(ContainerType.LIST, ast);
 		} else if (ast instanceof PlusBlockAST) {
@@ -184,25 +234,213 @@ public class ScalaModels {
 		}
 	}
 
-	public static Map<String, ScalaModel> generate(Grammar g) throws Exception {
+	/** Returns the model of every rule of {@code g}, by rule name. */
+	public Map<String, ScalaModel> rules(Grammar g) {
 
 		Map<String, ScalaModel> models = new LinkedHashMap<String, ScalaModel>();
 
 		for (String ruleName : g.rules.keySet()) {
 			final Rule rule = g.rules.get(ruleName);
-			if (rule != null && rule.alt != null) {
-				List<Object> altAsts = new ArrayList<Object>();
-				for (Alternative alt : rule.alt) {
-					if (alt != null) {
-						if (alt.ast != null) {
-							altAsts.add(alt.ast);
-						}
-					}
-				}
-				models.put(ruleName, choice(altAsts));
+			if (rule != null && rule.ast != null) {
+				models.put(ruleName, choice(block(rule)));
 			}
 		}
 
 		return models;
 	}
+
+	private static final class EmptyScalaModel extends BaseScalaModel {
+
+		@Override
+		public boolean isEmpty() {
+			return true;
+		}
+	}
+
+	private static final class RuleScalaModel extends BaseScalaModel {
+
+		private final String name;
+
+		RuleScalaModel(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean isRule() {
+			return true;
+		}
+
+		@Override
+		public String getRuleName() {
+			return name;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (!(obj instanceof RuleScalaModel)) {
+				return false;
+			}
+
+			return name.equals(((RuleScalaModel) obj).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+	}
+
+	private static final class ContainerScalaModel extends BaseScalaModel {
+
+		private final ContainerType type;
+
+		private final ScalaModel contained;
+
+		private final int hashCode;
+
+		ContainerScalaModel(ContainerType type, ScalaModel contained) {
+			this.type = type;
+			this.contained = contained;
+			this.hashCode = 31 * type.hashCode() + contained.hashCode();
+		}
+
+		@Override
+		public boolean isContainer() {
+			return true;
+		}
+
+		@Override
+		public boolean isList() {
+			return type == ContainerType.LIST;
+		}
+
+		@Override
+		public boolean isNonEmptyList() {
+			return type == ContainerType.NELIST;
+		}
+
+		@Override
+		public boolean isOption() {
+			return type == ContainerType.OPTION;
+		}
+
+		@Override
+		public ScalaModel getContained() {
+			return contained;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (!(obj instanceof ContainerScalaModel)) {
+				return false;
+			}
+
+			final ContainerScalaModel other = (ContainerScalaModel) obj;
+			return type == other.type && contained.equals(other.contained);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private static final class SequenceScalaModel extends BaseScalaModel {
+
+		private final List<ScalaModel> sequences;
+
+		private final int hashCode;
+
+		SequenceScalaModel(List<ScalaModel> sequences) {
+			this.sequences = sequences;
+			this.hashCode = sequences.hashCode();
+		}
+
+		@Override
+		public boolean isSequence() {
+			return true;
+		}
+
+		@Override
+		public List<ScalaModel> getSequences() {
+			return sequences;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (!(obj instanceof SequenceScalaModel)) {
+				return false;
+			}
+
+			final SequenceScalaModel other = (SequenceScalaModel) obj;
+			return hashCode == other.hashCode && sequences.equals(other.sequences);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+
+	private static final class ChoiceScalaModel extends BaseScalaModel {
+
+		private final String name;
+
+		private final List<ScalaModel> choices;
+
+		private final List<String> alternativeNames;
+
+		private final int hashCode;
+
+		ChoiceScalaModel(String name, List<ScalaModel> choices, List<String> alternativeNames) {
+			this.name = name;
+			this.choices = choices;
+			this.alternativeNames = alternativeNames;
+			this.hashCode = 31 * name.hashCode() + ~choices.hashCode();
+		}
+
+		@Override
+		public boolean isChoice() {
+			return true;
+		}
+
+		@Override
+		public List<ScalaModel> getChoices() {
+			return choices;
+		}
+
+		@Override
+		public String getChoiceName() {
+			return name;
+		}
+
+		@Override
+		public List<String> getAlternativeNames() {
+			return alternativeNames;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (!(obj instanceof ChoiceScalaModel)) {
+				return false;
+			}
+
+			final ChoiceScalaModel other = (ChoiceScalaModel) obj;
+			return hashCode == other.hashCode && name.equals(other.name) && choices.equals(other.choices)
+					&& alternativeNames.equals(other.alternativeNames);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
 }
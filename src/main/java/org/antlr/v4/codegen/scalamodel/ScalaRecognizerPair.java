@@ -0,0 +1,88 @@
+package org.antlr.v4.codegen.scalamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.Rule;
+
+/**
+ * The lexer that feeds a parser, for the companion methods that create both
+ * ({@code parseAll} and {@code newPool}). The lexer is the implicit lexer of
+ * a combined grammar or the {@code tokenVocab} of a parser grammar, and must
+ * be generated into the same package.
+ */
+public class ScalaRecognizerPair {
+
+	private final String lexer;
+
+	private final String startRule;
+
+	private ScalaRecognizerPair(String lexer, String startRule) {
+		this.lexer = lexer;
+		this.startRule = startRule;
+	}
+
+	public String getLexer() {
+		return lexer;
+	}
+
+	/**
+	 * The rule {@code parseAll} parses with: the first rule no other rule
+	 * references, or the first rule. {@code null} if it takes arguments.
+	 */
+	public String getStartRule() {
+		return startRule;
+	}
+
+	/** Returns {@code null} when {@code g} names no lexer. */
+	public static ScalaRecognizerPair create(Grammar g) {
+		final String lexer;
+		if (g.implicitLexer != null) {
+			lexer = g.implicitLexer.getRecognizerName();
+		} else if (g.getOptionString("tokenVocab") != null) {
+			lexer = g.getOptionString("tokenVocab");
+		} else {
+			return null;
+		}
+
+		Rule start = null;
+		for (Rule rule : g.rules.values()) {
+			if (rule.isStartRule) {
+				start = rule;
+				break;
+			}
+		}
+		if (start == null && !g.rules.isEmpty()) {
+			start = g.rules.values().iterator().next();
+		}
+
+		return new ScalaRecognizerPair(lexer, start != null && start.args == null ? start.name : null);
+	}
+
+	/**
+	 * Returns the rules the companion has a {@code parse<Rule>} method for:
+	 * the rules no other rule references, or the first rule when every rule
+	 * is referenced. Rules with arguments are left out.
+	 */
+	public static List<String> getStartRules(Grammar g) {
+		final List<String> names = new ArrayList<String>();
+		boolean allReferenced = true;
+		for (Rule rule : g.rules.values()) {
+			if (rule.isStartRule) {
+				allReferenced = false;
+				if (rule.args == null) {
+					names.add(rule.name);
+				}
+			}
+		}
+		if (allReferenced && !g.rules.isEmpty()) {
+			final Rule first = g.rules.values().iterator().next();
+			if (first.args == null) {
+				names.add(first.name);
+			}
+		}
+
+		return names;
+	}
+}
@@ -0,0 +1,244 @@
+package org.antlr.v4.codegen.scalamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.antlr.v4.parse.ANTLRParser;
+import org.antlr.v4.runtime.atn.PlusBlockStartState;
+import org.antlr.v4.runtime.atn.StarLoopEntryState;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.Rule;
+import org.antlr.v4.tool.ast.GrammarAST;
+import org.antlr.v4.tool.ast.PlusBlockAST;
+import org.antlr.v4.tool.ast.QuantifierAST;
+import org.antlr.v4.tool.ast.RuleRefAST;
+import org.antlr.v4.tool.ast.StarBlockAST;
+import org.antlr.v4.tool.ast.TerminalAST;
+
+/**
+ * A rule shaped like {@code file : header record* EOF} that the generated
+ * parser can hand out one {@code record} at a time. The rule must have a
+ * single alternative without actions: tokens and rule references, then a
+ * greedy {@code *} or {@code +} loop over a single rule reference, then
+ * optionally {@code EOF}. None of the rules involved may take arguments.
+ */
+public class ScalaStreamRule {
+
+	/** A token or rule reference matched before the loop. */
+	public static class Step {
+
+		private final int stateNumber;
+
+		private final int tokenType;
+
+		private final String ruleName;
+
+		Step(int stateNumber, int tokenType, String ruleName) {
+			this.stateNumber = stateNumber;
+			this.tokenType = tokenType;
+			this.ruleName = ruleName;
+		}
+
+		public int getStateNumber() {
+			return stateNumber;
+		}
+
+		public int getTokenType() {
+			return tokenType;
+		}
+
+		/** The referenced rule, or {@code null} for a token. */
+		public String getRuleName() {
+			return ruleName;
+		}
+	}
+
+	private final String name;
+
+	private final int startState;
+
+	private final List<Step> prefix;
+
+	private final String element;
+
+	private final int elementState;
+
+	private final int loopState;
+
+	private final int loopBackState;
+
+	private final int decision;
+
+	private final boolean plus;
+
+	private final int eofState;
+
+	private boolean companion;
+
+	private boolean ast;
+
+	private ScalaStreamRule(String name, int startState, List<Step> prefix, String element, int elementState,
+			int loopState, int loopBackState, int decision, boolean plus, int eofState) {
+		this.name = name;
+		this.startState = startState;
+		this.prefix = prefix;
+		this.element = element;
+		this.elementState = elementState;
+		this.loopState = loopState;
+		this.loopBackState = loopBackState;
+		this.decision = decision;
+		this.plus = plus;
+		this.eofState = eofState;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getStartState() {
+		return startState;
+	}
+
+	public List<Step> getPrefix() {
+		return prefix;
+	}
+
+	/** The rule the loop repeats. */
+	public String getElement() {
+		return element;
+	}
+
+	public int getElementState() {
+		return elementState;
+	}
+
+	public int getLoopState() {
+		return loopState;
+	}
+
+	public int getLoopBackState() {
+		return loopBackState;
+	}
+
+	/** The decision that predicts 1 for another element. */
+	public int getDecision() {
+		return decision;
+	}
+
+	public boolean isPlus() {
+		return plus;
+	}
+
+	/** Whether {@code EOF} is matched after the loop. */
+	public boolean isEof() {
+		return eofState >= 0;
+	}
+
+	public int getEofState() {
+		return eofState;
+	}
+
+	/** Whether the companion object gets a {@code parseStream} for this rule. */
+	public boolean isCompanion() {
+		return companion;
+	}
+
+	/**
+	 * Whether an iterator of {@code scalaAST=direct} case classes is
+	 * generated next to the one of contexts.
+	 */
+	public boolean isAst() {
+		return ast;
+	}
+
+	/**
+	 * Returns the rules of {@code g} that have the streaming shape. The first
+	 * of them that no other rule references is marked for the companion. A
+	 * rule gets an AST iterator when its element and every rule before the
+	 * loop are among {@code astRules}, the rules with an AST function.
+	 */
+	public static List<ScalaStreamRule> generate(Grammar g, Set<String> astRules) {
+		final List<ScalaStreamRule> rules = new ArrayList<ScalaStreamRule>();
+		boolean companion = false;
+		for (Rule rule : g.rules.values()) {
+			final ScalaStreamRule stream = create(g, rule);
+			if (stream != null) {
+				if (!companion && rule.isStartRule) {
+					stream.companion = true;
+					companion = true;
+				}
+				stream.ast = astRules.contains(stream.element);
+				for (Step step : stream.prefix) {
+					if (step.ruleName != null && !astRules.contains(step.ruleName)) {
+						stream.ast = false;
+					}
+				}
+				rules.add(stream);
+			}
+		}
+
+		return rules;
+	}
+
+	private static ScalaStreamRule create(Grammar g, Rule rule) {
+		if (rule.numberOfAlts != 1 || rule.args != null || !rule.actions.isEmpty() || !rule.namedActions.isEmpty()
+				|| rule.alt[1].ast.getChildCount() == 0) {
+			return null;
+		}
+
+		final List<Step> prefix = new ArrayList<Step>();
+		final List<GrammarAST> elements = new ArrayList<GrammarAST>();
+		for (Object child : rule.alt[1].ast.getChildren()) {
+			elements.add((GrammarAST) child);
+		}
+
+		int i = 0;
+		for (; i < elements.size(); i++) {
+			final GrammarAST ast = elements.get(i);
+			if (ast instanceof RuleRefAST && ast.getChildCount() == 0) {
+				prefix.add(new Step(ast.atnState.stateNumber, 0, ast.getText()));
+			} else if (ast instanceof TerminalAST && ast.getChildCount() == 0) {
+				prefix.add(new Step(ast.atnState.stateNumber, g.getTokenType(ast.getText()), null));
+			} else {
+				break;
+			}
+		}
+
+		if (i == elements.size() || !(elements.get(i) instanceof StarBlockAST || elements.get(i) instanceof PlusBlockAST)
+				|| !((QuantifierAST) elements.get(i)).isGreedy()) {
+			return null;
+		}
+
+		final GrammarAST loop = elements.get(i);
+		final GrammarAST block = (GrammarAST) loop.getChild(0);
+		if (block.getChildCount() != 1 || block.getChild(0).getChildCount() != 1) {
+			return null;
+		}
+
+		final GrammarAST ref = (GrammarAST) block.getChild(0).getChild(0);
+		if (!(ref instanceof RuleRefAST) || ref.getChildCount() != 0 || g.getRule(ref.getText()).args != null) {
+			return null;
+		}
+
+		int eofState = -1;
+		if (i + 1 < elements.size()) {
+			final GrammarAST eof = elements.get(i + 1);
+			if (i + 2 != elements.size() || eof.getType() != ANTLRParser.TOKEN_REF || !"EOF".equals(eof.getText())) {
+				return null;
+			}
+			eofState = eof.atnState.stateNumber;
+		}
+
+		final int startState = g.atn.ruleToStartState[rule.index].stateNumber;
+		if (loop instanceof StarBlockAST) {
+			final StarLoopEntryState entry = (StarLoopEntryState) loop.atnState;
+			return new ScalaStreamRule(rule.name, startState, prefix, ref.getText(), ref.atnState.stateNumber,
+					entry.stateNumber, entry.loopBackState.stateNumber, entry.decision, false, eofState);
+		}
+
+		final PlusBlockStartState start = (PlusBlockStartState) loop.atnState;
+		return new ScalaStreamRule(rule.name, startState, prefix, ref.getText(), ref.atnState.stateNumber,
+				start.stateNumber, start.loopBackState.stateNumber, start.loopBackState.decision, true, eofState);
+	}
+}
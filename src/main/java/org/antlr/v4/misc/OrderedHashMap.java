@@ -0,0 +1,54 @@
+package org.antlr.v4.misc;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the class of the same name in the ANTLR 4.1 tool, which must come
+ * later on the classpath. That class only records the order of its keys in
+ * {@code put}, and since Java 8 {@code HashMap.putAll} no longer calls
+ * {@code put}, so the tool's left-recursion transform found no operator
+ * alternatives in the maps it filled with {@code putAll} and failed on every
+ * rule with binary or suffix operators.
+ */
+public class OrderedHashMap<K, V> extends LinkedHashMap<K, V> {
+
+	private static final long serialVersionUID = -4127551298268351889L;
+
+	/** Track the elements as they are added to the set */
+	protected List<K> elements = new ArrayList<K>();
+
+	public K getKey(int i) {
+		return elements.get(i);
+	}
+
+	public V getElement(int i) {
+		return get(elements.get(i));
+	}
+
+	@Override
+	public V put(K key, V value) {
+		elements.add(key);
+		return super.put(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> m) {
+		for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	@Override
+	public V remove(Object key) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear() {
+		elements.clear();
+		super.clear();
+	}
+}
@@ -0,0 +1,488 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Tuple;
+import org.antlr.v4.runtime.misc.Tuple2;
+
+/**
+ * A buffered {@link TokenStream} that keeps its tokens as columns of
+ * {@code int} arrays (type, channel, start, stop, line and column) instead of
+ * one {@link CommonToken} per token. It installs itself as the token factory
+ * of its source, so the lexer's {@code emit} appends a row and allocates
+ * nothing; a token's text is only kept when the lexer set one explicitly.
+ * Once the source has emitted EOF its previous factory is put back, and a
+ * stream over a source another stream is still filling from takes over the
+ * factory that stream replaced, so reusing a lexer never chains streams. The
+ * columns grow in chunks of 2048 rows, so a full chunk is never copied.
+ * <p/>
+ * {@link #LA} reads the type column. A {@link Token} is created when
+ * {@link #LT} or {@link #get} asks for one, which the parser does for rule
+ * start and stop tokens, labels, error reporting and parse-tree leaves. It is
+ * a read-only view of its row, and the last 64 of them are cached, so
+ * repeated requests for the same index return the same object. Parsers
+ * generated with {@code scalaTokens=arrays} match unlabeled tokens through
+ * {@code LA} alone, but only after {@code setBuildParseTree(false)} and while
+ * no parse listener is registered.
+ * <p/>
+ * Like {@link org.antlr.v4.runtime.CommonTokenStream}, {@code LT} and
+ * {@code LA} skip tokens off the stream's channel, and token indexes count
+ * every token the lexer emitted. Instances are not thread-safe.
+ */
+public class ArrayTokenStream implements TokenStream, TokenFactory {
+
+	/** Rows per chunk of a column; chunks are never copied once full. */
+	private static final int CHUNK_SHIFT = 11;
+
+	private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+	/** The first chunk starts this small and doubles, so short inputs stay cheap. */
+	private static final int FIRST_CHUNK = 64;
+
+	private static final int CACHE_MASK = 63;
+
+	/**
+	 * What {@link #create} returns while filling, reset to the last row. The
+	 * lexer keeps it as its current token and places EOF after it.
+	 */
+	private final CommonToken recorded = new CommonToken(Token.INVALID_TYPE);
+
+	private final TokenSource tokenSource;
+
+	private final TokenFactory factory;
+
+	private final int channel;
+
+	private Tuple2<? extends TokenSource, CharStream> source;
+
+	private int[][] types = new int[16][];
+
+	private int[][] channels = new int[16][];
+
+	private int[][] starts = new int[16][];
+
+	private int[][] stops = new int[16][];
+
+	private int[][] lines = new int[16][];
+
+	private int[][] columns = new int[16][];
+
+	/** Text set by the lexer; a chunk is {@code null} until one of its tokens has some. */
+	private String[][] texts = new String[16][];
+
+	private final Token[] cache = new Token[CACHE_MASK + 1];
+
+	/** The number of buffered tokens. */
+	private int n;
+
+	/** The index of the current token, or -1 before the first token is fetched. */
+	private int p = -1;
+
+	private boolean fetchedEOF;
+
+	private boolean filling;
+
+	public ArrayTokenStream(TokenSource tokenSource) {
+		this(tokenSource, Token.DEFAULT_CHANNEL);
+	}
+
+	public ArrayTokenStream(TokenSource tokenSource, int channel) {
+		this.tokenSource = tokenSource;
+		final TokenFactory current = tokenSource.getTokenFactory();
+		this.factory = current instanceof ArrayTokenStream ? ((ArrayTokenStream) current).factory : current;
+		this.channel = channel;
+		this.source = Tuple.create(tokenSource, tokenSource.getInputStream());
+		tokenSource.setTokenFactory(this);
+	}
+
+	/**
+	 * Appends a row while the stream fetches from its source. Tokens created
+	 * at any other time, such as the missing tokens the error strategy
+	 * conjures up, come from the source's original factory.
+	 */
+	@Override
+	public Token create(Tuple2<? extends TokenSource, CharStream> source, int type, String text, int channel,
+			int start, int stop, int line, int charPositionInLine) {
+		if (!filling) {
+			return factory.create(source, type, text, channel, start, stop, line, charPositionInLine);
+		}
+
+		this.source = source;
+		add(type, text, channel, start, stop, line, charPositionInLine);
+		recorded.setType(type);
+		recorded.setChannel(channel);
+		recorded.setStartIndex(start);
+		recorded.setStopIndex(stop);
+		recorded.setLine(line);
+		recorded.setCharPositionInLine(charPositionInLine);
+		return recorded;
+	}
+
+	@Override
+	public Token create(int type, String text) {
+		return factory.create(type, text);
+	}
+
+	@Override
+	public void consume() {
+		final boolean skipEofCheck = p >= 0 && (fetchedEOF ? p < n - 1 : p < n);
+		if (!skipEofCheck && LA(1) == EOF) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		if (sync(p + 1)) {
+			p = nextOnChannel(p + 1);
+		}
+	}
+
+	@Override
+	public int LA(int i) {
+		final int index = indexOf(i);
+		return index < 0 ? Token.INVALID_TYPE : at(types, index);
+	}
+
+	@Override
+	public Token LT(int k) {
+		final int index = indexOf(k);
+		return index < 0 ? null : get(index);
+	}
+
+	/** The type of the token at absolute index {@code i}, without creating it. */
+	public int getType(int i) {
+		sync(i);
+		return at(types, i);
+	}
+
+	@Override
+	public Token get(int i) {
+		if (i < 0 || !sync(i)) {
+			throw new IndexOutOfBoundsException("token index " + i + " out of range 0.." + (n - 1));
+		}
+
+		Token token = cache[i & CACHE_MASK];
+		if (token == null || token.getTokenIndex() != i) {
+			token = new Row(this, i);
+			cache[i & CACHE_MASK] = token;
+		}
+
+		return token;
+	}
+
+	/** The buffer keeps every token, so marks cost nothing. */
+	@Override
+	public int mark() {
+		return 0;
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	@Override
+	public int index() {
+		return p;
+	}
+
+	@Override
+	public void seek(int index) {
+		lazyInit();
+		p = nextOnChannel(index);
+	}
+
+	/** The number of tokens fetched so far. */
+	@Override
+	public int size() {
+		return n;
+	}
+
+	/** Fetches every remaining token from the source. */
+	public void fill() {
+		lazyInit();
+		while (!fetchedEOF) {
+			fetch();
+		}
+	}
+
+	@Override
+	public TokenSource getTokenSource() {
+		return tokenSource;
+	}
+
+	@Override
+	public String getSourceName() {
+		return tokenSource.getSourceName();
+	}
+
+	@Override
+	public String getText() {
+		fill();
+		return getText(Interval.of(0, n - 1));
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		final int start = interval.a;
+		int stop = interval.b;
+		if (start < 0 || stop < 0) {
+			return "";
+		}
+
+		lazyInit();
+		sync(stop);
+		stop = Math.min(stop, n - 1);
+		final StringBuilder builder = new StringBuilder();
+		for (int i = start; i <= stop && at(types, i) != EOF; i++) {
+			builder.append(text(i));
+		}
+		return builder.toString();
+	}
+
+	@Override
+	public String getText(RuleContext ctx) {
+		return getText(ctx.getSourceInterval());
+	}
+
+	@Override
+	public String getText(Object start, Object stop) {
+		if (start instanceof Token && stop instanceof Token) {
+			return getText(Interval.of(((Token) start).getTokenIndex(), ((Token) stop).getTokenIndex()));
+		}
+
+		return "";
+	}
+
+	@Override
+	public String toString() {
+		return getSourceName();
+	}
+
+	private String text(int i) {
+		final String text = textAt(i);
+		if (text != null) {
+			return text;
+		}
+
+		final CharStream input = source.getItem2();
+		if (input == null) {
+			return null;
+		} else if (at(starts, i) >= input.size() || at(stops, i) >= input.size()) {
+			return "<EOF>";
+		}
+		return input.getText(Interval.of(at(starts, i), at(stops, i)));
+	}
+
+	/** The absolute index of the {@code k}th on-channel token from the current one. */
+	private int indexOf(int k) {
+		lazyInit();
+		if (k == 0) {
+			return -1;
+		} else if (k < 0) {
+			int i = p;
+			for (int m = 0; m < -k && i >= 0; m++) {
+				i = i > 0 ? previousOnChannel(i - 1) : -1;
+			}
+			return i;
+		}
+
+		int i = p;
+		for (int m = 1; m < k; m++) {
+			if (sync(i + 1)) {
+				i = nextOnChannel(i + 1);
+			}
+		}
+		return i;
+	}
+
+	private void lazyInit() {
+		if (p == -1) {
+			sync(0);
+			p = nextOnChannel(0);
+		}
+	}
+
+	/** Makes sure index {@code i} is buffered; false if the source ended before it. */
+	private boolean sync(int i) {
+		while (i >= n && !fetchedEOF) {
+			fetch();
+		}
+		return i < n;
+	}
+
+	private void fetch() {
+		final int before = n;
+		filling = true;
+		final Token token;
+		try {
+			token = tokenSource.nextToken();
+		} finally {
+			filling = false;
+		}
+
+		if (n == before) {
+			// a source that does not go through the token factory
+			add(token.getType(), token.getText(), token.getChannel(), token.getStartIndex(), token.getStopIndex(),
+					token.getLine(), token.getCharPositionInLine());
+		}
+		if (at(types, n - 1) == EOF) {
+			fetchedEOF = true;
+			if (tokenSource.getTokenFactory() == this) {
+				tokenSource.setTokenFactory(factory);
+			}
+		}
+	}
+
+	private void add(int type, String text, int channel, int start, int stop, int line, int column) {
+		final int chunk = n >>> CHUNK_SHIFT;
+		final int offset = n & CHUNK_MASK;
+		if (chunk == types.length) {
+			types = Arrays.copyOf(types, chunk * 2);
+			channels = Arrays.copyOf(channels, chunk * 2);
+			starts = Arrays.copyOf(starts, chunk * 2);
+			stops = Arrays.copyOf(stops, chunk * 2);
+			lines = Arrays.copyOf(lines, chunk * 2);
+			columns = Arrays.copyOf(columns, chunk * 2);
+			texts = Arrays.copyOf(texts, chunk * 2);
+		}
+		if (types[chunk] == null || offset == types[chunk].length) {
+			final int size = chunk == 0 ? Math.max(FIRST_CHUNK, offset * 2) : CHUNK_MASK + 1;
+			types[chunk] = grow(types[chunk], size);
+			channels[chunk] = grow(channels[chunk], size);
+			starts[chunk] = grow(starts[chunk], size);
+			stops[chunk] = grow(stops[chunk], size);
+			lines[chunk] = grow(lines[chunk], size);
+			columns[chunk] = grow(columns[chunk], size);
+		}
+
+		types[chunk][offset] = type;
+		channels[chunk][offset] = channel;
+		starts[chunk][offset] = start;
+		stops[chunk][offset] = stop;
+		lines[chunk][offset] = line;
+		columns[chunk][offset] = column;
+		if (text != null) {
+			if (texts[chunk] == null) {
+				texts[chunk] = new String[CHUNK_MASK + 1];
+			}
+			texts[chunk][offset] = text;
+		}
+		n++;
+	}
+
+	private String textAt(int i) {
+		final String[] chunk = texts[i >>> CHUNK_SHIFT];
+		return chunk != null ? chunk[i & CHUNK_MASK] : null;
+	}
+
+	private static int at(int[][] column, int i) {
+		return column[i >>> CHUNK_SHIFT][i & CHUNK_MASK];
+	}
+
+	private static int[] grow(int[] chunk, int size) {
+		return chunk == null ? new int[size] : Arrays.copyOf(chunk, size);
+	}
+
+	private int nextOnChannel(int i) {
+		sync(i);
+		while (i < n && at(channels, i) != channel && at(types, i) != EOF) {
+			i++;
+			sync(i);
+		}
+		return Math.min(i, n - 1);
+	}
+
+	private int previousOnChannel(int i) {
+		while (i >= 0 && at(channels, i) != channel) {
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * A token read from its row of the arrays: a reference and an index
+	 * instead of the nine fields of a {@link CommonToken}.
+	 */
+	private static final class Row implements Token {
+
+		private final ArrayTokenStream stream;
+
+		private final int index;
+
+		Row(ArrayTokenStream stream, int index) {
+			this.stream = stream;
+			this.index = index;
+		}
+
+		@Override
+		public String getText() {
+			return stream.text(index);
+		}
+
+		@Override
+		public int getType() {
+			return at(stream.types, index);
+		}
+
+		@Override
+		public int getLine() {
+			return at(stream.lines, index);
+		}
+
+		@Override
+		public int getCharPositionInLine() {
+			return at(stream.columns, index);
+		}
+
+		@Override
+		public int getChannel() {
+			return at(stream.channels, index);
+		}
+
+		@Override
+		public int getTokenIndex() {
+			return index;
+		}
+
+		@Override
+		public int getStartIndex() {
+			return at(stream.starts, index);
+		}
+
+		@Override
+		public int getStopIndex() {
+			return at(stream.stops, index);
+		}
+
+		@Override
+		public TokenSource getTokenSource() {
+			return stream.source.getItem1();
+		}
+
+		@Override
+		public CharStream getInputStream() {
+			return stream.source.getItem2();
+		}
+
+		/** The format of {@link CommonToken#toString}. */
+		@Override
+		public String toString() {
+			String text = getText();
+			if (text != null) {
+				text = text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+			} else {
+				text = "<no text>";
+			}
+
+			return "[@" + index + "," + getStartIndex() + ":" + getStopIndex() + "='" + text + "',<" + getType() + ">"
+					+ (getChannel() > 0 ? ",channel=" + getChannel() : "") + "," + getLine() + ":"
+					+ getCharPositionInLine() + "]";
+		}
+	}
+}
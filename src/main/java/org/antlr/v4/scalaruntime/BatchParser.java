@@ -0,0 +1,269 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.TokenStream;
+
+/**
+ * Parses many inputs on a fork-join pool. Every worker thread creates one
+ * lexer and one parser and points them at each input it takes, so the
+ * recognizers, and through their companion objects the shared ATN, are set
+ * up once per thread rather than once per input.
+ * <p/>
+ * An instance runs on the pool it is given and keeps the recognizers of each
+ * pool thread for its later {@link #parseAll(List)} calls, so create one per
+ * grammar and pool and reuse it. The static
+ * {@link #parseAll(List, int, Recognizers)} parses one batch on a pool of its
+ * own and shuts it down. The companion object of a generated parser has
+ * {@code newBatchParser(pool)} for the first and {@code parseAll} for the
+ * second. Instances are thread-safe.
+ */
+public final class BatchParser<T> {
+
+	/** Creates and runs the recognizers of one grammar. */
+	public interface Recognizers<T> {
+
+		Lexer newLexer(CharStream input);
+
+		/** Creates the token stream between the lexer and the parser. */
+		TokenStream newTokenStream(Lexer lexer);
+
+		Parser newParser(TokenStream input);
+
+		/** Parses with the start rule. */
+		T parse(Parser parser);
+	}
+
+	/** A syntax error reported by the lexer or the parser. */
+	public static final class SyntaxError {
+
+		private final int line;
+
+		private final int charPositionInLine;
+
+		private final String message;
+
+		SyntaxError(int line, int charPositionInLine, String message) {
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.message = message;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public int getCharPositionInLine() {
+			return charPositionInLine;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return "line " + line + ":" + charPositionInLine + " " + message;
+		}
+	}
+
+	/** The tree parsed from one input and the syntax errors it had. */
+	public static final class Result<T> {
+
+		private final String sourceName;
+
+		private final T tree;
+
+		private final List<SyntaxError> syntaxErrors;
+
+		Result(String sourceName, T tree, List<SyntaxError> syntaxErrors) {
+			this.sourceName = sourceName;
+			this.tree = tree;
+			this.syntaxErrors = syntaxErrors;
+		}
+
+		public String getSourceName() {
+			return sourceName;
+		}
+
+		public T getTree() {
+			return tree;
+		}
+
+		public List<SyntaxError> getSyntaxErrors() {
+			return syntaxErrors;
+		}
+
+		public boolean hasSyntaxErrors() {
+			return !syntaxErrors.isEmpty();
+		}
+	}
+
+	/** How many tasks per thread the inputs are split into, so idle threads can steal work. */
+	private static final int TASKS_PER_THREAD = 8;
+
+	private final ForkJoinPool pool;
+
+	private final Recognizers<T> recognizers;
+
+	/** The recognizers of each pool thread, kept between batches. */
+	private final ThreadLocal<Worker<T>> workers = new ThreadLocal<Worker<T>>();
+
+	public BatchParser(ForkJoinPool pool, Recognizers<T> recognizers) {
+		this.pool = pool;
+		this.recognizers = recognizers;
+	}
+
+	/**
+	 * Parses {@code inputs} on the pool and returns a result for each, in the
+	 * order of {@code inputs}. Syntax errors are collected in the results
+	 * instead of being printed. A parser generated with
+	 * {@code scalaErrors=failfast} stops at the first error and leaves the
+	 * tree {@code null}. Any other exception thrown while parsing stops the
+	 * batch and is rethrown.
+	 */
+	public List<Result<T>> parseAll(List<? extends CharStream> inputs) {
+		@SuppressWarnings("unchecked")
+		final Result<T>[] results = new Result[inputs.size()];
+		if (results.length == 0) {
+			return Collections.emptyList();
+		}
+
+		final Batch<T> batch = new Batch<T>(this, inputs, results,
+				Math.max(1, inputs.size() / (pool.getParallelism() * TASKS_PER_THREAD)));
+		pool.invoke(new Task<T>(batch, 0, inputs.size()));
+		return Arrays.asList(results);
+	}
+
+	/**
+	 * Parses {@code inputs} on a new pool of {@code parallelism} threads, which
+	 * is shut down afterwards, as {@link #parseAll(List)} does.
+	 */
+	public static <T> List<Result<T>> parseAll(List<? extends CharStream> inputs, int parallelism,
+			Recognizers<T> recognizers) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, not " + parallelism);
+		}
+
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return new BatchParser<T>(pool, recognizers).parseAll(inputs);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static final class Batch<T> {
+
+		final BatchParser<T> parser;
+
+		final List<? extends CharStream> inputs;
+
+		final Result<T>[] results;
+
+		final int threshold;
+
+		Batch(BatchParser<T> parser, List<? extends CharStream> inputs, Result<T>[] results, int threshold) {
+			this.parser = parser;
+			this.inputs = inputs;
+			this.results = results;
+			this.threshold = threshold;
+		}
+	}
+
+	private static final class Task<T> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Batch<T> batch;
+
+		private final int from;
+
+		private final int to;
+
+		Task(Batch<T> batch, int from, int to) {
+			this.batch = batch;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > batch.threshold) {
+				final int middle = (from + to) >>> 1;
+				invokeAll(new Task<T>(batch, from, middle), new Task<T>(batch, middle, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				final CharStream input = batch.inputs.get(i);
+				Worker<T> worker = batch.parser.workers.get();
+				if (worker == null) {
+					worker = new Worker<T>(batch.parser.recognizers, input);
+					batch.parser.workers.set(worker);
+				}
+				batch.results[i] = worker.parse(input);
+			}
+		}
+	}
+
+	/** The lexer and parser of one thread, which collect syntax errors into the current result. */
+	private static final class Worker<T> implements ANTLRErrorListener<Object> {
+
+		private final Recognizers<T> recognizers;
+
+		private final Lexer lexer;
+
+		private final Parser parser;
+
+		private List<SyntaxError> syntaxErrors;
+
+		Worker(Recognizers<T> recognizers, CharStream input) {
+			this.recognizers = recognizers;
+			this.lexer = recognizers.newLexer(input);
+			this.parser = recognizers.newParser(recognizers.newTokenStream(lexer));
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(this);
+			parser.removeErrorListeners();
+			parser.addErrorListener(this);
+		}
+
+		Result<T> parse(CharStream input) {
+			syntaxErrors = new ArrayList<SyntaxError>(0);
+			lexer.setInputStream(input);
+			parser.setInputStream(recognizers.newTokenStream(lexer));
+			T tree = null;
+			try {
+				tree = recognizers.parse(parser);
+			} catch (FailFastErrorStrategy.Failure e) {
+				// a scalaErrors=failfast parser has reported its first error
+			} catch (RecognitionException e) {
+				if (!(parser.getErrorHandler() instanceof FailFastErrorStrategy)) {
+					throw e;
+				}
+				parser.getErrorHandler().reportError(parser, e);
+			}
+			// the worker outlives the batch; keep it from holding on to the input
+			lexer.setInputStream(null);
+			parser.setInputStream(null);
+			return new Result<T>(input.getSourceName(), tree, syntaxErrors);
+		}
+
+		@Override
+		public <S> void syntaxError(Recognizer<S, ?> recognizer, S offendingSymbol, int line,
+				int charPositionInLine, String msg, RecognitionException e) {
+			syntaxErrors.add(new SyntaxError(line, charPositionInLine, msg));
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package org.antlr.v4.scalaruntime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+/**
+ * Saves what the prediction DFA of an ATN has learned and warms a fresh ATN
+ * with it. DFA states hold ATN configurations and prediction contexts, which
+ * are expensive to serialize and tied to one ATN instance, so the snapshot
+ * stores token paths instead: for every edge of every decision DFA, the
+ * token types from the start state through that edge. Loading replays each
+ * path through {@code adaptivePredict}, which rebuilds the same states and
+ * edges.
+ * <p/>
+ * A snapshot starts with the SHA-256 of the serialized ATN it was taken from
+ * and is rejected when that does not match. Edges that depend on the
+ * invoking rule context of a full-context prediction are not recorded.
+ */
+public final class DFASnapshot {
+
+	private static final int MAGIC = ('D' << 24) | ('F' << 16) | ('A' << 8) | 1;
+
+	private static final Charset UTF16 = Charset.forName("UTF-16BE");
+
+	/** Creates the parser whose interpreter replays a snapshot. */
+	public interface ParserFactory {
+		Parser newParser(TokenStream input);
+	}
+
+	private DFASnapshot() {
+	}
+
+	public static void save(ATN atn, char[] serializedATN, File file) throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			save(atn, serializedATN, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void save(ATN atn, char[] serializedATN, OutputStream out) throws IOException {
+		final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.write(checksum(serializedATN));
+		data.writeInt(atn.decisionToDFA.length);
+		for (DFA dfa : atn.decisionToDFA) {
+			writePaths(data, paths(dfa.s0.get()));
+			writePaths(data, paths(dfa.s0full.get()));
+		}
+		data.flush();
+	}
+
+	/**
+	 * Replays the snapshot in {@code file} on the ATN of the parsers
+	 * {@code factory} creates. Returns {@code false}, without touching the
+	 * DFA, when the snapshot was taken from a different ATN.
+	 */
+	public static boolean load(char[] serializedATN, ParserFactory factory, File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			return load(serializedATN, factory, in);
+		} finally {
+			in.close();
+		}
+	}
+
+	public static boolean load(char[] serializedATN, ParserFactory factory, InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC) {
+			return false;
+		}
+
+		final byte[] checksum = new byte[32];
+		data.readFully(checksum);
+		if (!Arrays.equals(checksum, checksum(serializedATN))) {
+			return false;
+		}
+
+		final Parser parser = factory.newParser(new CommonTokenStream(new TypeTokenSource(new int[0])));
+		final int decisions = data.readInt();
+		if (decisions != parser.getATN().decisionToDFA.length) {
+			return false;
+		}
+
+		for (int decision = 0; decision < decisions; decision++) {
+			replay(parser, decision, false, readPaths(data));
+			replay(parser, decision, true, readPaths(data));
+		}
+
+		return true;
+	}
+
+	private static void replay(Parser parser, int decision, boolean useContext, List<int[]> paths) {
+		for (int[] path : paths) {
+			final TokenStream input = new CommonTokenStream(new TypeTokenSource(path));
+			// fetch the first token, or adaptivePredict seeks back to index -1
+			input.LA(1);
+			try {
+				parser.getInterpreter().adaptivePredict(input, decision, ParserRuleContext.emptyContext(), useContext);
+			} catch (RuntimeException e) {
+				// the path ends inside the DFA, or it needs predicates that
+				// cannot run without a real rule context; the states it went
+				// through are cached either way
+			}
+		}
+	}
+
+	/** Returns the path to every edge reachable from {@code s0}. */
+	private static List<int[]> paths(DFAState s0) {
+		final List<int[]> result = new ArrayList<int[]>();
+		if (s0 == null) {
+			return result;
+		}
+
+		final Map<DFAState, int[]> visited = new IdentityHashMap<DFAState, int[]>();
+		final Deque<DFAState> queue = new ArrayDeque<DFAState>();
+		visited.put(s0, new int[0]);
+		queue.add(s0);
+		while (!queue.isEmpty()) {
+			final DFAState state = queue.remove();
+			final int[] prefix = visited.get(state);
+			for (Map.Entry<Integer, DFAState> edge : state.getEdgeMap().entrySet()) {
+				final int[] path = Arrays.copyOf(prefix, prefix.length + 1);
+				path[prefix.length] = edge.getKey();
+				result.add(path);
+
+				final DFAState target = edge.getValue();
+				if (target != null && !visited.containsKey(target)) {
+					visited.put(target, path);
+					queue.add(target);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	private static void writePaths(DataOutputStream data, List<int[]> paths) throws IOException {
+		data.writeInt(paths.size());
+		for (int[] path : paths) {
+			data.writeInt(path.length);
+			for (int type : path) {
+				data.writeInt(type);
+			}
+		}
+	}
+
+	private static List<int[]> readPaths(DataInputStream data) throws IOException {
+		final int count = data.readInt();
+		final List<int[]> paths = new ArrayList<int[]>(count);
+		for (int i = 0; i < count; i++) {
+			final int[] path = new int[data.readInt()];
+			for (int j = 0; j < path.length; j++) {
+				path[j] = data.readInt();
+			}
+			paths.add(path);
+		}
+		return paths;
+	}
+
+	private static byte[] checksum(char[] serializedATN) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(new String(serializedATN).getBytes(UTF16));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Emits tokens of the given types, then EOF. */
+	private static final class TypeTokenSource implements TokenSource {
+
+		private final int[] types;
+
+		private int index;
+
+		private TokenFactory tokenFactory = CommonTokenFactory.DEFAULT;
+
+		TypeTokenSource(int[] types) {
+			this.types = types;
+		}
+
+		@Override
+		public Token nextToken() {
+			if (index < types.length && types[index] != Token.EOF) {
+				return new CommonToken(types[index++]);
+			}
+
+			return new CommonToken(Token.EOF);
+		}
+
+		@Override
+		public int getLine() {
+			return 1;
+		}
+
+		@Override
+		public int getCharPositionInLine() {
+			return index;
+		}
+
+		@Override
+		public CharStream getInputStream() {
+			return null;
+		}
+
+		@Override
+		public String getSourceName() {
+			return "DFA snapshot";
+		}
+
+		@Override
+		public TokenFactory getTokenFactory() {
+			return tokenFactory;
+		}
+
+		@Override
+		public void setTokenFactory(TokenFactory tokenFactory) {
+			this.tokenFactory = tokenFactory;
+		}
+	}
+}
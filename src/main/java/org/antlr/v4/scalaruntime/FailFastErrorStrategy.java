@@ -0,0 +1,116 @@
+package org.antlr.v4.scalaruntime;
+
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.NoViableAltException;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * The error strategy of parsers generated with {@code scalaErrors=failfast},
+ * whose rules have no {@code try}/{@code catch} and so do not recover. The
+ * first syntax error is recorded and unwinds the whole parse with
+ * {@link #FAILURE}, a single preallocated exception without a stack trace,
+ * to {@link #firstError}, which the generated {@code firstError} calls.
+ * <p/>
+ * Mismatched tokens, the most common error, are detected without creating a
+ * {@link RecognitionException}. A prediction that finds no viable
+ * alternative still throws the exception the ATN simulator creates, which
+ * {@link #firstError} catches the same way. The error is also passed to
+ * the parser's error listeners.
+ */
+public class FailFastErrorStrategy extends DefaultErrorStrategy {
+
+	/** Unwinds a parse after its first syntax error. */
+	public static final class Failure extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private Failure() {
+			super("syntax error", null, false, false);
+		}
+	}
+
+	public static final Failure FAILURE = new Failure();
+
+	private BatchParser.SyntaxError error;
+
+	/**
+	 * Runs {@code rule} on {@code parser} and returns its first syntax error,
+	 * or {@code null} when there was none. After an error the parser is in the
+	 * middle of a rule; reset it before it parses again.
+	 */
+	public static BatchParser.SyntaxError firstError(Parser parser, Runnable rule) {
+		final FailFastErrorStrategy strategy = (FailFastErrorStrategy) parser.getErrorHandler();
+		strategy.reset(parser);
+		try {
+			rule.run();
+			return null;
+		} catch (Failure e) {
+			return strategy.error;
+		} catch (RecognitionException e) {
+			strategy.reportError(parser, e);
+			return strategy.error;
+		}
+	}
+
+	/**
+	 * Returns what the generated code of an LL(1) decision throws when no
+	 * alternative matches.
+	 */
+	public static RuntimeException noViableAlt(Parser parser) {
+		final ANTLRErrorStrategy handler = parser.getErrorHandler();
+		if (handler instanceof FailFastErrorStrategy) {
+			final FailFastErrorStrategy strategy = (FailFastErrorStrategy) handler;
+			strategy.fail(parser, parser.getCurrentToken(),
+					"no viable alternative at input " + strategy.getTokenErrorDisplay(parser.getCurrentToken()), null);
+			return FAILURE;
+		}
+
+		return new NoViableAltException(parser);
+	}
+
+	/** The error of the last parse, or {@code null} when it had none. */
+	public BatchParser.SyntaxError getError() {
+		return error;
+	}
+
+	@Override
+	public void reset(Parser recognizer) {
+		super.reset(recognizer);
+		error = null;
+	}
+
+	/** Loops are not resynchronized; a bad token fails the next match or prediction instead. */
+	@Override
+	public void sync(Parser recognizer) {
+	}
+
+	@Override
+	public Token recoverInline(Parser recognizer) {
+		final Token token = recognizer.getCurrentToken();
+		fail(recognizer, token, "mismatched input " + getTokenErrorDisplay(token) + " expecting "
+				+ getExpectedTokens(recognizer).toString(recognizer.getTokenNames()), null);
+		throw FAILURE;
+	}
+
+	@Override
+	public void recover(Parser recognizer, RecognitionException e) {
+		reportError(recognizer, e);
+		throw FAILURE;
+	}
+
+	@Override
+	protected void notifyErrorListeners(Parser recognizer, String message, RecognitionException e) {
+		final Token token = e.getOffendingToken(recognizer);
+		fail(recognizer, token != null ? token : recognizer.getCurrentToken(), message, e);
+	}
+
+	private void fail(Parser recognizer, Token token, String message, RecognitionException e) {
+		if (error == null) {
+			error = new BatchParser.SyntaxError(token.getLine(), token.getCharPositionInLine(), message);
+			recognizer.notifyErrorListeners(token, message, e);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.RuleNode;
+
+/**
+ * A visitor whose {@link #visitChildren} visits large subtrees in parallel.
+ * The children of a node that spans at least {@code threshold} tokens are
+ * split in halves, which are visited as fork-join tasks on {@code pool}
+ * until a half spans fewer tokens than the threshold or is a single child.
+ * The results of the children are merged in their order with
+ * {@link #combine}, which must be associative and have
+ * {@link #defaultResult} as its identity.
+ * <p/>
+ * One visitor is shared by all the tasks of a visit, so visit methods must
+ * not change its state. {@code aggregateResult} and
+ * {@code shouldVisitNextChild} are not used. The generated
+ * {@code <Grammar>ParallelVisitor} extends this class.
+ */
+public abstract class ForkJoinParseTreeVisitor<Result> extends AbstractParseTreeVisitor<Result> {
+
+	private final ForkJoinPool pool;
+
+	private final int threshold;
+
+	protected ForkJoinParseTreeVisitor(ForkJoinPool pool, int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be at least 1, not " + threshold);
+		}
+
+		this.pool = pool;
+		this.threshold = threshold;
+	}
+
+	/** Merges the results of two adjacent subtrees, the earlier one first. */
+	protected abstract Result combine(Result left, Result right);
+
+	@Override
+	public Result visitChildren(RuleNode node) {
+		final int n = node.getChildCount();
+		if (n > 1 && tokens(node, 0, n) >= threshold) {
+			final Children children = new Children(node, 0, n);
+			return ForkJoinTask.inForkJoinPool() ? children.invoke() : pool.invoke(children);
+		}
+
+		return visitSequentially(node, 0, n);
+	}
+
+	private Result visitSequentially(RuleNode node, int from, int to) {
+		Result result = defaultResult();
+		for (int i = from; i < to; i++) {
+			result = combine(result, node.getChild(i).accept(this));
+		}
+		return result;
+	}
+
+	/** The number of tokens the children {@code from} to {@code to} (exclusive) of {@code node} span. */
+	private static int tokens(RuleNode node, int from, int to) {
+		final Interval first = node.getChild(from).getSourceInterval();
+		final Interval last = node.getChild(to - 1).getSourceInterval();
+		return last.b - first.a + 1;
+	}
+
+	private final class Children extends RecursiveTask<Result> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RuleNode node;
+
+		private final int from;
+
+		private final int to;
+
+		Children(RuleNode node, int from, int to) {
+			this.node = node;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Result compute() {
+			if (to - from == 1) {
+				final ParseTree child = node.getChild(from);
+				return child.accept(ForkJoinParseTreeVisitor.this);
+			} else if (tokens(node, from, to) < threshold) {
+				return visitSequentially(node, from, to);
+			}
+
+			final int middle = (from + to) >>> 1;
+			final Children left = new Children(node, from, middle);
+			left.fork();
+			final Result right = new Children(node, middle, to).compute();
+			return combine(left.join(), right);
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package org.antlr.v4.scalaruntime;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe table of canonical instances by equality. {@link #intern}
+ * returns the instance of the table that equals its argument, so equal
+ * values share one instance and compare by reference first. The table only
+ * holds its instances weakly: an instance that nothing else references is
+ * collected and its entry removed on a later call.
+ * <p/>
+ * Values must be immutable, and their {@code hashCode} should be cheap. The
+ * case classes of a parser generated with {@code scalaIntern=weak} compute
+ * their hash once, from the cached hashes of their interned children, and
+ * the companion object keeps a table for them.
+ */
+public final class InternTable<T> {
+
+	private final ConcurrentHashMap<Object, Entry<T>> entries = new ConcurrentHashMap<Object, Entry<T>>();
+
+	private final ReferenceQueue<T> collected = new ReferenceQueue<T>();
+
+	/**
+	 * Returns the instance of the table equal to {@code value}, adding
+	 * {@code value} when there is none. Equal values are expected to be of
+	 * the same class.
+	 */
+	@SuppressWarnings("unchecked")
+	public <V extends T> V intern(V value) {
+		if (value == null) {
+			return null;
+		}
+
+		expunge();
+		final Entry<T> existing = entries.get(new Lookup(value));
+		if (existing != null) {
+			final T instance = existing.get();
+			if (instance != null) {
+				return (V) instance;
+			}
+		}
+
+		final Entry<T> entry = new Entry<T>(value, collected);
+		while (true) {
+			final Entry<T> previous = entries.putIfAbsent(entry, entry);
+			if (previous == null) {
+				return value;
+			}
+
+			final T instance = previous.get();
+			if (instance != null) {
+				return (V) instance;
+			}
+			entries.remove(previous, previous);
+		}
+	}
+
+	/** The number of entries, including those whose instance was collected but not yet removed. */
+	public int size() {
+		expunge();
+		return entries.size();
+	}
+
+	private void expunge() {
+		Object ref;
+		while ((ref = collected.poll()) != null) {
+			entries.remove(ref, ref);
+		}
+	}
+
+	/** A weak entry, equal to another entry whose instance is still reachable and equal. */
+	private static final class Entry<T> extends WeakReference<T> {
+
+		private final int hash;
+
+		Entry(T value, ReferenceQueue<T> queue) {
+			super(value, queue);
+			this.hash = value.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			} else if (!(obj instanceof Entry) || ((Entry<?>) obj).hash != hash) {
+				return false;
+			}
+
+			final T value = get();
+			return value != null && value.equals(((Entry<?>) obj).get());
+		}
+	}
+
+	/** Finds the entry equal to a value without allocating a weak reference. */
+	private static final class Lookup {
+
+		private final Object value;
+
+		Lookup(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public int hashCode() {
+			return value.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Entry && value.equals(((Entry<?>) obj).get());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+/**
+ * Walks a parse tree like {@code ParseTreeWalker}, calling the same listener
+ * methods in the same order, but keeps the path from the root on an explicit
+ * stack instead of recursing, so the depth of the tree is only limited by
+ * the heap. The listener of a grammar generated with {@code scalaDispatch=typed}
+ * has a {@code walker} that overrides {@link #enter} and {@link #exit} to call
+ * the rule's listener methods without casting the listener.
+ */
+public class IterativeParseTreeWalker<L extends ParseTreeListener> {
+
+	public void walk(L listener, ParseTree tree) {
+		if (!(tree instanceof RuleNode)) {
+			visitLeaf(listener, tree);
+			return;
+		}
+
+		ParserRuleContext[] path = new ParserRuleContext[32];
+		int[] nextChild = new int[32];
+		int depth = 0;
+
+		ParserRuleContext ctx = (ParserRuleContext) ((RuleNode) tree).getRuleContext();
+		listener.enterEveryRule(ctx);
+		enter(listener, ctx);
+		path[depth++] = ctx;
+
+		while (depth > 0) {
+			final ParserRuleContext parent = path[depth - 1];
+			final int i = nextChild[depth - 1];
+			if (i == parent.getChildCount()) {
+				exit(listener, parent);
+				listener.exitEveryRule(parent);
+				path[--depth] = null;
+				continue;
+			}
+
+			nextChild[depth - 1] = i + 1;
+			final ParseTree child = parent.getChild(i);
+			if (!(child instanceof RuleNode)) {
+				visitLeaf(listener, child);
+				continue;
+			}
+
+			ctx = (ParserRuleContext) ((RuleNode) child).getRuleContext();
+			listener.enterEveryRule(ctx);
+			enter(listener, ctx);
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+				nextChild = Arrays.copyOf(nextChild, depth * 2);
+			}
+			path[depth] = ctx;
+			nextChild[depth] = 0;
+			depth++;
+		}
+	}
+
+	/** Calls the enter method of the rule of {@code ctx}. */
+	protected void enter(L listener, ParserRuleContext ctx) {
+		ctx.enterRule(listener);
+	}
+
+	/** Calls the exit method of the rule of {@code ctx}. */
+	protected void exit(L listener, ParserRuleContext ctx) {
+		ctx.exitRule(listener);
+	}
+
+	private static void visitLeaf(ParseTreeListener listener, ParseTree tree) {
+		if (tree instanceof ErrorNode) {
+			listener.visitErrorNode((ErrorNode) tree);
+		} else if (tree instanceof TerminalNode) {
+			listener.visitTerminal((TerminalNode) tree);
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package org.antlr.v4.scalaruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A {@link CharStream} over a memory-mapped file. Characters are decoded from
+ * the mapped bytes as the lexer reads them, so neither the file nor its text
+ * is copied onto the heap; tokens that do not copy their text slice it from
+ * here only when {@code getText} is called.
+ * <p/>
+ * UTF-8 and the single-byte ISO-8859-1 and US-ASCII encodings are supported.
+ * Malformed UTF-8 decodes to U+FFFD, one replacement per bad byte. Code points
+ * above U+FFFF are two {@code char}s, as in a Java string. For UTF-8 the byte
+ * offset of every 1024th character is remembered the first time it is
+ * reached, which is all a {@link #seek} needs; {@link #size} decodes the rest
+ * of the file once, the first time it is called.
+ * <p/>
+ * The file is mapped in windows of 1 GiB, so it may be larger than 2 GiB as
+ * long as it holds fewer than 2<sup>31</sup> characters. Instances are not
+ * thread-safe.
+ */
+public class MappedCharStream implements CharStream {
+
+	private static final int WINDOW_SHIFT = 30;
+
+	private static final long WINDOW_MASK = (1L << WINDOW_SHIFT) - 1;
+
+	private static final int CHECKPOINT_SHIFT = 10;
+
+	private static final int REPLACEMENT = 0xFFFD;
+
+	private final String sourceName;
+
+	private final MappedByteBuffer[] windows;
+
+	private final long length;
+
+	private final boolean utf8;
+
+	/** Byte offset, shifted left by one, of every 1024th character; the low bit marks a low surrogate. */
+	private long[] checkpoints = new long[16];
+
+	private int checkpointCount = 1;
+
+	private int size = -1;
+
+	/** The index of the current character. */
+	private int index;
+
+	/** The offset of the code point the current character belongs to. */
+	private long position;
+
+	/** Whether the current character is the low surrogate of its code point. */
+	private boolean low;
+
+	/** The number of bytes of the code point {@link #decode} read last. */
+	private int width;
+
+	public MappedCharStream(File file) throws IOException {
+		this(file, Charset.forName("UTF-8"));
+	}
+
+	public MappedCharStream(File file, Charset charset) throws IOException {
+		if (charset.name().equals("UTF-8")) {
+			this.utf8 = true;
+		} else if (charset.name().equals("ISO-8859-1") || charset.name().equals("US-ASCII")) {
+			this.utf8 = false;
+		} else {
+			throw new IllegalArgumentException("Unsupported charset " + charset + ", use UTF-8 or ISO-8859-1");
+		}
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			this.length = channel.size();
+			this.windows = new MappedByteBuffer[(int) ((length + WINDOW_MASK) >>> WINDOW_SHIFT)];
+			for (int i = 0; i < windows.length; i++) {
+				final long start = (long) i << WINDOW_SHIFT;
+				windows[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length - start, 1L << WINDOW_SHIFT));
+			}
+		} finally {
+			// the mappings stay valid after the channel is closed
+			raf.close();
+		}
+
+		if (!utf8) {
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException(file + " has more than " + Integer.MAX_VALUE + " characters");
+			}
+			this.size = (int) length;
+		}
+
+		this.sourceName = file.getPath();
+	}
+
+	@Override
+	public void consume() {
+		if (LA(1) == IntStream.EOF) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		advance();
+	}
+
+	@Override
+	public int LA(int i) {
+		if (i == 0) {
+			return 0;
+		} else if (i == 1) {
+			return current();
+		}
+
+		final int target = i > 0 ? index + i - 1 : index + i;
+		if (target < 0) {
+			return IntStream.EOF;
+		}
+
+		final int savedIndex = index;
+		final long savedPosition = position;
+		final boolean savedLow = low;
+		seek(target);
+		final int c = index == target ? current() : IntStream.EOF;
+		index = savedIndex;
+		position = savedPosition;
+		low = savedLow;
+		return c;
+	}
+
+	/** The whole file stays mapped, so marks cost nothing. */
+	@Override
+	public int mark() {
+		return -1;
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	@Override
+	public int index() {
+		return index;
+	}
+
+	/**
+	 * Moves to character {@code index}, or to the end of the file when it has
+	 * fewer characters.
+	 */
+	@Override
+	public void seek(int index) {
+		if (!utf8) {
+			this.index = Math.min(index, size);
+			this.position = this.index;
+			return;
+		}
+
+		final int checkpoint = Math.min(index >>> CHECKPOINT_SHIFT, checkpointCount - 1);
+		if (index < this.index && this.index - index <= index - (checkpoint << CHECKPOINT_SHIFT)) {
+			// the lexer mostly seeks back a few characters, to where its last token ended
+			while (this.index > index) {
+				retreat();
+			}
+			return;
+		}
+
+		if (index < this.index || (checkpoint << CHECKPOINT_SHIFT) > this.index) {
+			this.index = checkpoint << CHECKPOINT_SHIFT;
+			this.position = checkpoints[checkpoint] >>> 1;
+			this.low = (checkpoints[checkpoint] & 1) != 0;
+		}
+
+		while (this.index < index && position < length) {
+			advance();
+		}
+	}
+
+	@Override
+	public int size() {
+		if (size < 0) {
+			final int savedIndex = index;
+			final long savedPosition = position;
+			final boolean savedLow = low;
+			seek(Integer.MAX_VALUE);
+			size = index;
+			index = savedIndex;
+			position = savedPosition;
+			low = savedLow;
+		}
+
+		return size;
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		final int start = Math.max(interval.a, 0);
+		if (interval.b < start) {
+			return "";
+		}
+
+		final int savedIndex = index;
+		final long savedPosition = position;
+		final boolean savedLow = low;
+		seek(start);
+		final StringBuilder builder = new StringBuilder(Math.min(interval.b - start + 1, 1024));
+		while (index <= interval.b && position < length) {
+			builder.append((char) current());
+			advance();
+		}
+		index = savedIndex;
+		position = savedPosition;
+		low = savedLow;
+		return builder.toString();
+	}
+
+	@Override
+	public String getSourceName() {
+		return sourceName;
+	}
+
+	@Override
+	public String toString() {
+		return sourceName;
+	}
+
+	private int current() {
+		if (position >= length) {
+			return IntStream.EOF;
+		} else if (!utf8) {
+			return byteAt(position);
+		}
+
+		final int c = decode();
+		if (c < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			return c;
+		}
+		return low ? Character.lowSurrogate(c) : Character.highSurrogate(c);
+	}
+
+	private void advance() {
+		if (!utf8) {
+			index++;
+			position++;
+			return;
+		}
+
+		if (!low && byteAt(position) < 0x80) {
+			position++;
+		} else if (decode() >= Character.MIN_SUPPLEMENTARY_CODE_POINT && !low) {
+			low = true;
+		} else {
+			position += width;
+			low = false;
+		}
+		index++;
+
+		if ((index & ((1 << CHECKPOINT_SHIFT) - 1)) == 0 && (index >>> CHECKPOINT_SHIFT) == checkpointCount) {
+			if (checkpointCount == checkpoints.length) {
+				checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+			}
+			checkpoints[checkpointCount++] = (position << 1) | (low ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Moves back one character. The previous code point starts at the nearest
+	 * byte before {@link #position} that is not a continuation byte if that
+	 * byte decodes to exactly the bytes in between; otherwise the previous
+	 * byte was malformed and is a character of its own.
+	 */
+	private void retreat() {
+		index--;
+		if (low) {
+			low = false;
+			return;
+		}
+
+		long start = position - 1;
+		while (start > position - 4 && start > 0 && (byteAt(start) & 0xC0) == 0x80) {
+			start--;
+		}
+
+		final long end = position;
+		position = start;
+		final int c = decode();
+		if (position + width != end) {
+			position = end - 1;
+		} else if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			low = true;
+		}
+	}
+
+	/**
+	 * Decodes the code point at {@link #position} and sets {@link #width} to
+	 * the number of bytes it takes.
+	 */
+	private int decode() {
+		final int b0 = byteAt(position);
+		width = 1;
+		if (b0 < 0x80) {
+			return b0;
+		}
+
+		final int n = b0 >= 0xC2 && b0 < 0xE0 ? 2 : b0 >= 0xE0 && b0 < 0xF0 ? 3 : b0 >= 0xF0 && b0 < 0xF5 ? 4 : 0;
+		if (n == 0 || position + n > length) {
+			return REPLACEMENT;
+		}
+
+		int c = b0 & (0xFF >>> (n + 1));
+		for (int i = 1; i < n; i++) {
+			final int b = byteAt(position + i);
+			if ((b & 0xC0) != 0x80) {
+				return REPLACEMENT;
+			}
+			c = (c << 6) | (b & 0x3F);
+		}
+
+		if ((n == 3 && (c < 0x800 || Character.isSurrogate((char) c)))
+				|| (n == 4 && (c < Character.MIN_SUPPLEMENTARY_CODE_POINT || c > Character.MAX_CODE_POINT))) {
+			return REPLACEMENT;
+		}
+
+		width = n;
+		return c;
+	}
+
+	private int byteAt(long offset) {
+		return windows[(int) (offset >>> WINDOW_SHIFT)].get((int) (offset & WINDOW_MASK)) & 0xFF;
+	}
+}
@@ -0,0 +1,198 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.antlr.v4.runtime.atn.ATN;
+
+/**
+ * How often the rules and decisions of one grammar ran and how long they
+ * took. The companion object of a parser generated with
+ * {@code scalaProfile=counters} holds one of these as {@code parseProfile},
+ * which all parsers of the grammar add to; without the option nothing of it
+ * is generated.
+ * <p/>
+ * A rule's time runs from its entry to its exit and so includes the rules it
+ * calls. A decision's time is the time {@code adaptivePredict} took, which is
+ * where full-context prediction shows up. The counters are
+ * {@link LongAdder}s, so parsers on different threads rarely write to the
+ * same cache line.
+ */
+public class ParseProfile {
+
+	/** The count and total time of one rule or decision. */
+	public static final class Counter {
+
+		private final String name;
+
+		private final int index;
+
+		private final long count;
+
+		private final long nanos;
+
+		Counter(String name, int index, long count, long nanos) {
+			this.name = name;
+			this.index = index;
+			this.count = count;
+			this.nanos = nanos;
+		}
+
+		/** The rule name, or {@code rule:decision} for a decision. */
+		public String getName() {
+			return name;
+		}
+
+		/** The rule index or the decision number. */
+		public int getIndex() {
+			return index;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		@Override
+		public String toString() {
+			return name + " count=" + count + " time=" + nanos / 1000 + "us";
+		}
+	}
+
+	/** The counters at one point in time. */
+	public static final class Snapshot {
+
+		private final List<Counter> rules;
+
+		private final List<Counter> decisions;
+
+		Snapshot(List<Counter> rules, List<Counter> decisions) {
+			this.rules = Collections.unmodifiableList(rules);
+			this.decisions = Collections.unmodifiableList(decisions);
+		}
+
+		/** One counter per rule, by rule index. */
+		public List<Counter> getRules() {
+			return rules;
+		}
+
+		/** One counter per decision, by decision number. */
+		public List<Counter> getDecisions() {
+			return decisions;
+		}
+
+		/** The counters of {@code counters} that ran at least once, the most expensive first. */
+		public static List<Counter> hotspots(List<Counter> counters) {
+			final List<Counter> result = new ArrayList<Counter>();
+			for (Counter counter : counters) {
+				if (counter.getCount() > 0) {
+					result.add(counter);
+				}
+			}
+
+			Collections.sort(result, new Comparator<Counter>() {
+				@Override
+				public int compare(Counter o1, Counter o2) {
+					return Long.compare(o2.getNanos(), o1.getNanos());
+				}
+			});
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			final StringBuilder builder = new StringBuilder("rules:\n");
+			for (Counter counter : hotspots(rules)) {
+				builder.append("  ").append(counter).append('\n');
+			}
+			builder.append("decisions:\n");
+			for (Counter counter : hotspots(decisions)) {
+				builder.append("  ").append(counter).append('\n');
+			}
+			return builder.toString();
+		}
+	}
+
+	private final String[] ruleNames;
+
+	private final String[] decisionNames;
+
+	private final LongAdder[] ruleCounts;
+
+	private final LongAdder[] ruleNanos;
+
+	private final LongAdder[] decisionCounts;
+
+	private final LongAdder[] decisionNanos;
+
+	/** Only the rule of every decision is read from {@code atn}. */
+	public ParseProfile(String[] ruleNames, ATN atn) {
+		this.ruleNames = ruleNames.clone();
+		this.decisionNames = new String[atn.getNumberOfDecisions()];
+		for (int i = 0; i < decisionNames.length; i++) {
+			decisionNames[i] = ruleNames[atn.decisionToState.get(i).ruleIndex] + ":" + i;
+		}
+
+		this.ruleCounts = adders(ruleNames.length);
+		this.ruleNanos = adders(ruleNames.length);
+		this.decisionCounts = adders(decisionNames.length);
+		this.decisionNanos = adders(decisionNames.length);
+	}
+
+	/** Records one run of rule {@code ruleIndex} that started at {@code startNanos}. */
+	public void exitRule(int ruleIndex, long startNanos) {
+		final long nanos = System.nanoTime() - startNanos;
+		ruleCounts[ruleIndex].increment();
+		ruleNanos[ruleIndex].add(nanos);
+	}
+
+	/** Records one prediction of {@code decision} that started at {@code startNanos}. */
+	public void predicted(int decision, long startNanos) {
+		final long nanos = System.nanoTime() - startNanos;
+		decisionCounts[decision].increment();
+		decisionNanos[decision].add(nanos);
+	}
+
+	/**
+	 * Reads the counters. Parses that are running meanwhile may be partly
+	 * included.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(counters(ruleNames, ruleCounts, ruleNanos),
+				counters(decisionNames, decisionCounts, decisionNanos));
+	}
+
+	/** Sets every counter back to zero. */
+	public void reset() {
+		for (int i = 0; i < ruleNames.length; i++) {
+			ruleCounts[i].reset();
+			ruleNanos[i].reset();
+		}
+		for (int i = 0; i < decisionNames.length; i++) {
+			decisionCounts[i].reset();
+			decisionNanos[i].reset();
+		}
+	}
+
+	private static LongAdder[] adders(int length) {
+		final LongAdder[] result = new LongAdder[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = new LongAdder();
+		}
+		return result;
+	}
+
+	private static List<Counter> counters(String[] names, LongAdder[] counts, LongAdder[] nanos) {
+		final List<Counter> result = new ArrayList<Counter>(names.length);
+		for (int i = 0; i < names.length; i++) {
+			result.add(new Counter(names[i], i, counts[i].sum(), nanos[i].sum()));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,88 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+
+/**
+ * A thread-safe pool of lexer and parser pairs, so that a request does not
+ * pay for constructing recognizers and their simulators. {@link #acquire}
+ * takes an idle pair and resets it to read the new input, or creates a pair
+ * when none is idle; it never blocks. {@link #release} keeps the pair for the
+ * next request unless {@code capacity} pairs are idle already. The companion
+ * object of every generated parser has a {@code newPool} that creates one.
+ * <p/>
+ * Resetting clears the per-parse state of both recognizers and keeps their
+ * configuration: error strategy, error and parse listeners, and whether a
+ * parse tree is built. Remove listeners that belong to one request before
+ * releasing the parser.
+ */
+public abstract class RecognizerPool<P extends Parser> {
+
+	private static final class Idle<P> {
+
+		final Lexer lexer;
+
+		final P parser;
+
+		Idle(Lexer lexer, P parser) {
+			this.lexer = lexer;
+			this.parser = parser;
+		}
+	}
+
+	private final BlockingQueue<Idle<P>> idle;
+
+	public RecognizerPool(int capacity) {
+		this.idle = new ArrayBlockingQueue<Idle<P>>(capacity);
+	}
+
+	protected abstract Lexer newLexer(CharStream input);
+
+	protected abstract P newParser(TokenStream input);
+
+	/** Creates the token stream between the lexer and the parser. */
+	protected TokenStream newTokenStream(Lexer lexer) {
+		return new CommonTokenStream(lexer);
+	}
+
+	/** Returns a parser reading {@code input}, through a lexer of its own. */
+	public P acquire(CharStream input) {
+		final Idle<P> pair = idle.poll();
+		if (pair == null) {
+			return newParser(newTokenStream(newLexer(input)));
+		}
+
+		pair.lexer.setInputStream(input);
+		pair.parser.setInputStream(newTokenStream(pair.lexer));
+		return pair.parser;
+	}
+
+	/**
+	 * Returns a parser from {@link #acquire} to the pool. The pool drops its
+	 * input, so trees it built stay valid but the parser must not be used
+	 * again by the caller.
+	 */
+	public void release(P parser) {
+		final TokenSource source = parser.getInputStream() != null ? parser.getInputStream().getTokenSource() : null;
+		if (!(source instanceof Lexer)) {
+			return;
+		}
+
+		final Lexer lexer = (Lexer) source;
+		lexer.setInputStream(null);
+		parser.setInputStream(null);
+		idle.offer(new Idle<P>(lexer, parser));
+	}
+
+	/** The number of idle pairs. */
+	public int getIdleCount() {
+		return idle.size();
+	}
+}
@@ -0,0 +1,112 @@
+package org.antlr.v4.scalaruntime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads and writes the binary form of a serialized ATN that the Scala target
+ * emits next to the generated recognizer when the {@code scalaATN=resource}
+ * option is set.
+ * <p/>
+ * The format is a four byte header ({@code 'A' 'T' 'N'} and the format
+ * version), the number of values, and then every value of the serialized ATN
+ * as an unsigned LEB128 varint. Most values are small, so nearly all of them
+ * take a single byte.
+ */
+public final class SerializedATNResource {
+
+	private static final int MAGIC = ('A' << 24) | ('T' << 16) | ('N' << 8) | 1;
+
+	private SerializedATNResource() {
+	}
+
+	/**
+	 * Loads the serialized ATN stored in the resource {@code name}, resolved
+	 * relative to {@code owner}. The result can be passed straight to
+	 * {@code ATNSimulator.deserialize}.
+	 */
+	public static char[] load(Class<?> owner, String name) {
+		final InputStream in = owner.getResourceAsStream(name);
+		if (in == null) {
+			throw new IllegalStateException("Cannot find serialized ATN resource " + name + " next to " + owner.getName());
+		}
+
+		try {
+			final ReadableByteChannel channel = Channels.newChannel(in);
+			try {
+				return read(channel);
+			} finally {
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot read serialized ATN resource " + name, e);
+		}
+	}
+
+	public static char[] read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (channel.read(buffer) >= 0) {
+			if (!buffer.hasRemaining()) {
+				final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+		buffer.flip();
+
+		if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a serialized ATN resource");
+		}
+
+		final char[] data = new char[readVarint(buffer)];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (char) readVarint(buffer);
+		}
+
+		return data;
+	}
+
+	public static void write(char[] data, WritableByteChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(4 + 3 * (data.length + 1));
+		buffer.putInt(MAGIC);
+		writeVarint(buffer, data.length);
+		for (char c : data) {
+			writeVarint(buffer, c);
+		}
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static int readVarint(ByteBuffer buffer) throws IOException {
+		int value = 0;
+		int shift = 0;
+		while (true) {
+			if (!buffer.hasRemaining() || shift > 28) {
+				throw new IOException("Truncated serialized ATN resource");
+			}
+
+			final int b = buffer.get() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+			shift += 7;
+		}
+	}
+
+	private static void writeVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+}
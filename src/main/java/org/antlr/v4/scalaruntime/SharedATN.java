@@ -0,0 +1,80 @@
+package org.antlr.v4.scalaruntime;
+
+import org.antlr.v4.runtime.atn.ATN;
+
+/**
+ * The ATN that the parsers of one grammar run on. The ATN owns the DFA and
+ * the prediction-context cache, so whoever shares the ATN shares what
+ * {@code adaptivePredict} has learned. The companion object of every
+ * generated parser and lexer holds one of these.
+ * <p/>
+ * In {@link Mode#GLOBAL} mode every parser uses a single ATN. DFA states are
+ * added through a concurrent map and edges through a lock on the source
+ * state only, so threads only contend while they extend the same state,
+ * which stops happening once the DFA is warm. In {@link Mode#THREAD} mode
+ * every thread deserializes and warms its own ATN, which trades memory and
+ * warm-up time for no shared writes at all.
+ * <p/>
+ * The mode is read when a parser is created; parsers that already exist
+ * keep the ATN they were created with.
+ */
+public abstract class SharedATN {
+
+	public enum Mode {
+		GLOBAL, THREAD
+	}
+
+	private volatile Mode mode = Mode.GLOBAL;
+
+	private volatile ATN global;
+
+	private final ThreadLocal<ATN> perThread = new ThreadLocal<ATN>() {
+		@Override
+		protected ATN initialValue() {
+			return createATN();
+		}
+	};
+
+	/** Deserializes a new, cold copy of the grammar's ATN. */
+	protected abstract ATN createATN();
+
+	/** Returns the ATN a parser created by the current thread should use. */
+	public ATN get() {
+		if (mode == Mode.THREAD) {
+			return perThread.get();
+		}
+
+		ATN result = global;
+		if (result == null) {
+			synchronized (this) {
+				result = global;
+				if (result == null) {
+					result = createATN();
+					global = result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public void setMode(Mode mode) {
+		if (mode == null) {
+			throw new NullPointerException("mode");
+		}
+
+		this.mode = mode;
+	}
+
+	/**
+	 * Drops the DFA learned by the ATN {@link #get} currently returns. The
+	 * prediction-context cache is kept.
+	 */
+	public void clearDFA() {
+		get().clearDFA();
+	}
+}
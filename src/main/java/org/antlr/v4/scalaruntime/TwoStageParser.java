@@ -0,0 +1,111 @@
+package org.antlr.v4.scalaruntime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+/**
+ * Parses in two stages. The first stage predicts with SLL, which never
+ * needs the full parser context, and bails out at the first syntax error.
+ * Only when it fails does the second stage reset the parser to where it
+ * started and parse again with full LL prediction and the parser's own
+ * error strategy and listeners. SLL only fails on input that LL also
+ * rejects or that needs full context to predict, so the tree is the one a
+ * plain LL parse builds, and most input is parsed once, by the cheaper
+ * stage.
+ * <p/>
+ * The companion object of a generated parser holds one of these as
+ * {@code twoStageParser}, and its {@code parse<Rule>} methods count into
+ * it. Parse listeners see the events of both stages when a parse falls
+ * back.
+ */
+public class TwoStageParser {
+
+	/** Runs a start rule. */
+	public interface StartRule<T> {
+
+		T parse(Parser parser);
+	}
+
+	private final LongAdder parses = new LongAdder();
+
+	private final LongAdder fallbacks = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	/** Parses with {@code rule} from the current position of {@code parser}. */
+	public <T> T parse(Parser parser, StartRule<T> rule) {
+		parses.increment();
+		final TokenStream input = parser.getInputStream();
+		// a fresh stream has no index until it fills its buffer
+		input.LA(1);
+		final int start = input.index();
+		final ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+		final PredictionMode mode = parser.getInterpreter().getPredictionMode();
+		final List<ANTLRErrorListener<? super Token>> listeners = new ArrayList<ANTLRErrorListener<? super Token>>(
+				parser.getErrorListeners());
+
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.removeErrorListeners();
+		try {
+			return rule.parse(parser);
+		} catch (ParseCancellationException e) {
+			fallbacks.increment();
+		} finally {
+			parser.setErrorHandler(errorHandler);
+			for (ANTLRErrorListener<? super Token> listener : listeners) {
+				parser.addErrorListener(listener);
+			}
+			parser.getInterpreter().setPredictionMode(mode);
+		}
+
+		parser.reset();
+		input.seek(start);
+		parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+		try {
+			final T result = rule.parse(parser);
+			if (parser.getNumberOfSyntaxErrors() > 0) {
+				failures.increment();
+			}
+			return result;
+		} finally {
+			parser.getInterpreter().setPredictionMode(mode);
+		}
+	}
+
+	/** How many parses ran. */
+	public long getParses() {
+		return parses.sum();
+	}
+
+	/** How many parses failed with SLL and ran again with LL. */
+	public long getFallbacks() {
+		return fallbacks.sum();
+	}
+
+	/** How many parses still had syntax errors with LL. */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	public void reset() {
+		parses.reset();
+		fallbacks.reset();
+		failures.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "parses=" + getParses() + " fallbacks=" + getFallbacks() + " failures=" + getFailures();
+	}
+}
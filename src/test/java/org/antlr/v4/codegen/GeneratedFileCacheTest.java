@@ -0,0 +1,105 @@
+package org.antlr.v4.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.antlr.v4.Tool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Generates a grammar twice with {@code scalaOutputCache} set. Before the
+ * second run every cache entry is overwritten with a marker, so the marker
+ * in the output shows that the file was copied from the cache.
+ */
+public class GeneratedFileCacheTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String GRAMMAR = "row : field (',' field)* '\\n' ;\n"
+			+ "field : TEXT | ;\n"
+			+ "TEXT : ~[,\\n]+ ;\n";
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reusesFilesWithLanguageOption() throws IOException {
+		final File grammar = write("grammar T;\n" + GRAMMAR);
+		assertSecondRunHits(grammar, "-Dlanguage=Scala");
+	}
+
+	@Test
+	public void reusesFilesWithLanguageInGrammar() throws IOException {
+		// without -D options the tool leaves grammarOptions null
+		final File grammar = write("grammar T;\noptions { language=Scala; }\n" + GRAMMAR);
+		assertSecondRunHits(grammar);
+	}
+
+	private void assertSecondRunHits(File grammar, String... options) throws IOException {
+		final File cache = folder.newFolder("cache");
+		final String previous = System.getProperty("antlr4.scalaOutputCache");
+		System.setProperty("antlr4.scalaOutputCache", cache.getPath());
+		try {
+			final File first = generate(grammar, options);
+			assertTrue(parser(first).isFile());
+			final File[] entries = cache.listFiles();
+			assertNotNull(entries);
+			assertTrue("no cache entries", entries.length > 0);
+			for (File entry : entries) {
+				Files.write(entry.toPath(), ("// entry " + entry.getName() + "\n").getBytes(UTF8));
+			}
+
+			final File second = generate(grammar, options);
+			final String text = new String(Files.readAllBytes(parser(second).toPath()), UTF8);
+			assertTrue("not restored from the cache: " + text, text.startsWith("// entry "));
+			assertEquals(entries.length, cache.listFiles().length);
+		} finally {
+			if (previous == null) {
+				System.clearProperty("antlr4.scalaOutputCache");
+			} else {
+				System.setProperty("antlr4.scalaOutputCache", previous);
+			}
+		}
+	}
+
+	private File generate(File grammar, String... options) throws IOException {
+		final File output = folder.newFolder();
+		final String[] args = new String[options.length + 3];
+		System.arraycopy(options, 0, args, 0, options.length);
+		args[options.length] = "-o";
+		args[options.length + 1] = output.getPath();
+		args[options.length + 2] = grammar.getPath();
+
+		final Tool tool = new Tool(args);
+		tool.processGrammarsOnCommandLine();
+		assertEquals("tool errors", 0, tool.errMgr.getNumErrors());
+		return output;
+	}
+
+	private File write(String grammar) throws IOException {
+		final File file = new File(folder.newFolder("grammar"), "T.g4");
+		Files.write(file.toPath(), grammar.getBytes(UTF8));
+		return file;
+	}
+
+	private static File parser(File directory) {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				final File found = f.isDirectory() ? parser(f) : f.getName().equals("TParser.scala") ? f : null;
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return new File(directory, "TParser.scala");
+	}
+}
@@ -0,0 +1,87 @@
+package org.antlr.v4.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.Tool;
+import org.antlr.v4.tool.ANTLRMessage;
+import org.antlr.v4.tool.ANTLRToolListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Generates {@code scalaAST=direct} for a grammar where one rule takes
+ * arguments. That rule and the rules that refer to it are skipped and
+ * reported; the others keep their AST functions.
+ */
+public class ScalaASTDirectTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void skipsOnlyRulesWithArguments() throws IOException {
+		final File grammar = new File(folder.newFolder("grammar"), "T.g4");
+		Files.write(grammar.toPath(), ("grammar T;\n"
+				+ "options { language=Scala; scalaAST=direct; }\n"
+				+ "top : item (',' item)* EOF ;\n"
+				+ "item : INT | '(' item ')' ;\n"
+				+ "pair : key[true] '=' INT ;\n"
+				+ "key[boolean upper] : ID ;\n"
+				+ "INT : [0-9]+ ;\n"
+				+ "ID : [a-z]+ ;\n").getBytes(UTF8));
+
+		final File output = folder.newFolder("output");
+		final Tool tool = new Tool(new String[] { "-o", output.getPath(), grammar.getPath() });
+		final List<String> infos = new ArrayList<String>();
+		tool.addListener(new ANTLRToolListener() {
+			@Override
+			public void info(String msg) {
+				infos.add(msg);
+			}
+
+			@Override
+			public void error(ANTLRMessage msg) {
+			}
+
+			@Override
+			public void warning(ANTLRMessage msg) {
+			}
+		});
+		tool.processGrammarsOnCommandLine();
+		assertEquals("tool errors", 0, tool.errMgr.getNumErrors());
+
+		final String parser = new String(Files.readAllBytes(find(output, "TParser.scala").toPath()), UTF8);
+		assertTrue(parser.contains("def topAST(): TopAST = {"));
+		assertTrue(parser.contains("def itemAST(): ItemAST = {"));
+		assertFalse(parser.contains("def pairAST(): PairAST = {"));
+		assertFalse(parser.contains("def keyAST(): KeyAST = {"));
+
+		assertTrue(infos.toString(), infos.contains("scalaAST=direct skips rule key of T: it takes arguments"));
+		assertTrue(infos.toString(), infos.contains("scalaAST=direct skips rule pair of T: it refers to key"));
+	}
+
+	private static File find(File directory, String name) {
+		final File[] files = directory.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				final File found = f.isDirectory() ? find(f, name) : f.getName().equals(name) ? f : null;
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return new File(directory, name);
+	}
+}
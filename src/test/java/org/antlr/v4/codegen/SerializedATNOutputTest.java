@@ -0,0 +1,112 @@
+package org.antlr.v4.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+
+import org.antlr.v4.Tool;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.scalaruntime.SerializedATNResource;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Generates a grammar with {@code scalaATN=resource} and checks that the
+ * {@code .atn} files land where the recognizers load them from: in the
+ * directory of their package.
+ */
+public class SerializedATNOutputTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void writesWithoutPackageNextToSource() throws IOException {
+		final File output = generate(grammar(folder.newFolder("grammar")));
+		assertResources(output);
+	}
+
+	@Test
+	public void writesUnderPackagePath() throws IOException {
+		final File output = generate(grammar(folder.newFolder("grammar")), "-package", "com.example.csv");
+		assertResources(new File(output, "com/example/csv"));
+	}
+
+	@Test
+	public void keepsPackageDirectoryOfOutput() throws IOException {
+		// sources that are already generated into the package directory
+		final File output = new File(folder.newFolder("output"), "com/example/csv");
+		final Tool tool = new Tool(new String[] { "-Dlanguage=Scala", "-package", "com.example.csv", "-o",
+				output.getPath(), grammar(folder.newFolder("grammar")).getPath() });
+		tool.processGrammarsOnCommandLine();
+		assertEquals("tool errors", 0, tool.errMgr.getNumErrors());
+		assertResources(output);
+	}
+
+	@Test
+	public void writesToResourcesDirectory() throws IOException {
+		final File resources = folder.newFolder("resources");
+		final String previous = System.getProperty("antlr4.scalaATNDirectory");
+		System.setProperty("antlr4.scalaATNDirectory", resources.getPath());
+		try {
+			final File output = generate(grammar(folder.newFolder("grammar")), "-package", "com.example.csv");
+			assertFalse(new File(output, "com/example/csv/TParser.atn").exists());
+			assertResources(new File(resources, "com/example/csv"));
+		} finally {
+			if (previous == null) {
+				System.clearProperty("antlr4.scalaATNDirectory");
+			} else {
+				System.setProperty("antlr4.scalaATNDirectory", previous);
+			}
+		}
+	}
+
+	private static void assertResources(File directory) throws IOException {
+		for (String name : new String[] { "TLexer.atn", "TParser.atn" }) {
+			final File file = new File(directory, name);
+			assertTrue(file.getPath(), file.isFile());
+			final FileChannel channel = new FileInputStream(file).getChannel();
+			try {
+				ATNSimulator.deserialize(SerializedATNResource.read(channel));
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	private File generate(File grammar, String... options) throws IOException {
+		final File output = folder.newFolder("output");
+		final String[] args = new String[options.length + 4];
+		args[0] = "-Dlanguage=Scala";
+		System.arraycopy(options, 0, args, 1, options.length);
+		args[options.length + 1] = "-o";
+		args[options.length + 2] = output.getPath();
+		args[options.length + 3] = grammar.getPath();
+
+		final Tool tool = new Tool(args);
+		tool.processGrammarsOnCommandLine();
+		assertEquals("tool errors", 0, tool.errMgr.getNumErrors());
+		return output;
+	}
+
+	private static File grammar(File directory) throws IOException {
+		// the implicit lexer of the tool does not inherit language=Scala, so it is passed with -D
+		final File file = new File(directory, "T.g4");
+		Files.write(file.toPath(), ("grammar T;\n"
+				+ "options { language=Scala; scalaATN=resource; }\n"
+				+ "row : field (',' field)* '\\n' ;\n"
+				+ "field : TEXT | ;\n"
+				+ "TEXT : ~[,\\n]+ ;\n").getBytes(UTF8));
+		return file;
+	}
+}
@@ -0,0 +1,275 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Test;
+
+/**
+ * Checks {@link ArrayTokenStream} against a {@link CommonTokenStream} over
+ * the same input. The corpus inputs span several chunks of rows.
+ */
+public class ArrayTokenStreamTest {
+
+	@Test
+	public void buffersSameTokens() {
+		for (Corpus corpus : Corpus.values()) {
+			final CommonTokenStream expected = new CommonTokenStream(corpus.newLexer(corpus.input()));
+			expected.fill();
+			final ArrayTokenStream stream = new ArrayTokenStream(corpus.newLexer(corpus.input()));
+			stream.fill();
+
+			assertEquals(corpus.name(), expected.size(), stream.size());
+			for (int i = 0; i < expected.size(); i++) {
+				assertSameToken(corpus.name(), expected.get(i), stream.get(i));
+			}
+			assertEquals(corpus.name(), expected.getText(), stream.getText());
+		}
+	}
+
+	@Test
+	public void walksAndSeeksLikeCommonTokenStream() {
+		final Random random = new Random(13);
+		for (Corpus corpus : Corpus.values()) {
+			walk(corpus.name(), random, new CommonTokenStream(corpus.newLexer(corpus.input())),
+					new ArrayTokenStream(corpus.newLexer(corpus.input())));
+		}
+	}
+
+	@Test
+	public void buildsSameParseTree() {
+		for (Corpus corpus : Corpus.values()) {
+			assertEquals(corpus.name(), parse(corpus, new CommonTokenStream(corpus.newLexer(corpus.input())), 0),
+					parse(corpus, new ArrayTokenStream(corpus.newLexer(corpus.input())), 0));
+		}
+	}
+
+	@Test
+	public void recoversLikeCommonTokenStream() {
+		// dropped and doubled tokens make the error strategy conjure up and skip tokens
+		final String[] inputs = { "[{\"a\": 1 \"b\": }, , [1 2]]", "SELECT FROM WHERE a = = 1; DELETE sessions;",
+				"a,\"b\nc,d\n\"" };
+		for (int i = 0; i < inputs.length; i++) {
+			final Corpus corpus = Corpus.values()[i];
+			final String expected = parse(corpus, new CommonTokenStream(corpus.newLexer(inputs[i])), -1);
+			assertEquals(corpus.name(), expected, parse(corpus, new ArrayTokenStream(corpus.newLexer(inputs[i])), -1));
+		}
+	}
+
+	@Test
+	public void skipsTokensOffChannel() {
+		// the corpus grammars skip whitespace, so move every third token to the hidden channel
+		final Corpus corpus = Corpus.SQL;
+		final Lexer lexer = corpus.newLexer(corpus.input());
+		final CommonTokenStream lexed = new CommonTokenStream(lexer);
+		lexed.fill();
+		final List<Token> tokens = new ArrayList<Token>();
+		final List<Token> hidden = new ArrayList<Token>();
+		for (Token t : lexed.getTokens()) {
+			final CommonToken token = new CommonToken(t);
+			if (token.getType() != Token.EOF && token.getTokenIndex() % 3 == 1) {
+				token.setChannel(Token.HIDDEN_CHANNEL);
+			}
+			tokens.add(token);
+
+			// CommonTokenStream runs past the end when EOF is not on its channel
+			final CommonToken hiddenToken = new CommonToken(token);
+			if (hiddenToken.getType() == Token.EOF) {
+				hiddenToken.setChannel(Token.HIDDEN_CHANNEL);
+			}
+			hidden.add(hiddenToken);
+		}
+
+		walk("default channel", new Random(14), new CommonTokenStream(new ReplaySource(tokens, lexer.getInputStream())),
+				new ArrayTokenStream(new ReplaySource(tokens, lexer.getInputStream())));
+		walk("hidden channel", new Random(15),
+				new CommonTokenStream(new ReplaySource(hidden, lexer.getInputStream()), Token.HIDDEN_CHANNEL),
+				new ArrayTokenStream(new ReplaySource(hidden, lexer.getInputStream()), Token.HIDDEN_CHANNEL));
+
+		final CommonTokenStream expected = new CommonTokenStream(new ReplaySource(tokens, lexer.getInputStream()));
+		expected.fill();
+		final ArrayTokenStream stream = new ArrayTokenStream(new ReplaySource(tokens, lexer.getInputStream()));
+		stream.fill();
+		assertEquals(expected.size(), stream.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSameToken("replayed", expected.get(i), stream.get(i));
+		}
+	}
+
+	@Test
+	public void restoresTokenFactoryAtEOF() {
+		final Lexer lexer = Corpus.JSON.newLexer(Corpus.JSON.input());
+		final TokenFactory factory = lexer.getTokenFactory();
+		final ArrayTokenStream stream = new ArrayTokenStream(lexer);
+		assertSame(stream, lexer.getTokenFactory());
+		stream.fill();
+		assertSame(factory, lexer.getTokenFactory());
+	}
+
+	@Test
+	public void reusesLexerWithoutChainingFactories() {
+		// the first stream stops before EOF, as when a parse fails fast
+		final Corpus corpus = Corpus.CSV;
+		final Lexer lexer = corpus.newLexer(corpus.input());
+		final TokenFactory factory = lexer.getTokenFactory();
+		final ArrayTokenStream first = new ArrayTokenStream(lexer);
+		first.LA(5);
+
+		for (int i = 0; i < 3; i++) {
+			lexer.setInputStream(corpus.newLexer(corpus.input()).getInputStream());
+			final ArrayTokenStream stream = new ArrayTokenStream(lexer);
+			stream.fill();
+			assertSame(factory, lexer.getTokenFactory());
+
+			final CommonTokenStream expected = new CommonTokenStream(corpus.newLexer(corpus.input()));
+			expected.fill();
+			assertEquals(expected.size(), stream.size());
+			for (int j = 0; j < expected.size(); j++) {
+				assertSameToken("reused " + i, expected.get(j), stream.get(j));
+			}
+		}
+	}
+
+	/**
+	 * Consumes both streams to the end in random steps, comparing lookahead
+	 * and lookbehind, seeking back now and then and reading text ranges.
+	 */
+	private static void walk(String name, Random random, TokenStream expected, TokenStream stream) {
+		assertSameState(name, expected, stream);
+		while (expected.LA(1) != Token.EOF) {
+			switch (random.nextInt(8)) {
+			case 0:
+				final int back = Math.max(0, expected.index() - random.nextInt(8));
+				expected.seek(back);
+				stream.seek(back);
+				break;
+			case 1:
+				final int a = Math.max(0, expected.index() - random.nextInt(10));
+				// CommonTokenStream leaves out tokens it has not fetched yet
+				final Interval interval = Interval.of(a, Math.min(a + random.nextInt(30), expected.size() - 1));
+				assertEquals(name + " getText" + interval, expected.getText(interval), stream.getText(interval));
+				break;
+			default:
+				expected.consume();
+				stream.consume();
+				break;
+			}
+			assertSameState(name, expected, stream);
+		}
+	}
+
+	private static void assertSameState(String name, TokenStream expected, TokenStream stream) {
+		final String at = name + " at " + expected.index();
+		assertEquals(at, expected.index(), stream.index());
+		for (int k = -2; k <= 3; k++) {
+			if (k == 0 || expected.index() + k < 0) {
+				continue;
+			}
+			final Token token;
+			try {
+				token = expected.LT(k);
+			} catch (IndexOutOfBoundsException e) {
+				// CommonTokenStream fails to look behind the first token on its channel
+				continue;
+			}
+			if (token == null) {
+				assertEquals(at + " LT(" + k + ")", null, stream.LT(k));
+			} else {
+				assertSameToken(at + " LT(" + k + ")", token, stream.LT(k));
+				assertEquals(at + " LA(" + k + ")", expected.LA(k), stream.LA(k));
+			}
+		}
+	}
+
+	private static void assertSameToken(String name, Token expected, Token token) {
+		final String at = name + " token " + expected.getTokenIndex();
+		assertEquals(at, expected.toString(), token.toString());
+		assertEquals(at, expected.getType(), token.getType());
+		assertEquals(at, expected.getChannel(), token.getChannel());
+		assertEquals(at, expected.getTokenIndex(), token.getTokenIndex());
+		assertEquals(at, expected.getStartIndex(), token.getStartIndex());
+		assertEquals(at, expected.getStopIndex(), token.getStopIndex());
+		assertEquals(at, expected.getLine(), token.getLine());
+		assertEquals(at, expected.getCharPositionInLine(), token.getCharPositionInLine());
+		assertEquals(at, expected.getText(), token.getText());
+		assertSame(at, token.getTokenSource().getInputStream(), token.getInputStream());
+	}
+
+	/** Parses and returns the tree, after checking the number of syntax errors unless it is negative. */
+	private static String parse(Corpus corpus, TokenStream tokens, int errors) {
+		final Parser parser = corpus.newParser(tokens);
+		parser.removeErrorListeners();
+		final ParserRuleContext tree = corpus.parse(parser);
+		if (errors >= 0) {
+			assertEquals(corpus.name() + " syntax errors", errors, parser.getNumberOfSyntaxErrors());
+		}
+		return tree.toStringTree(parser) + " errors=" + parser.getNumberOfSyntaxErrors();
+	}
+
+	/** Emits tokens that were lexed before, without going through the token factory. */
+	private static final class ReplaySource implements TokenSource {
+
+		private final List<Token> tokens;
+
+		private final CharStream input;
+
+		private int index;
+
+		private TokenFactory tokenFactory;
+
+		ReplaySource(List<Token> tokens, CharStream input) {
+			this.tokens = tokens;
+			this.input = input;
+		}
+
+		@Override
+		public Token nextToken() {
+			return tokens.get(Math.min(index++, tokens.size() - 1));
+		}
+
+		@Override
+		public int getLine() {
+			return tokens.get(Math.min(index, tokens.size() - 1)).getLine();
+		}
+
+		@Override
+		public int getCharPositionInLine() {
+			return tokens.get(Math.min(index, tokens.size() - 1)).getCharPositionInLine();
+		}
+
+		@Override
+		public CharStream getInputStream() {
+			return input;
+		}
+
+		@Override
+		public String getSourceName() {
+			return "replay";
+		}
+
+		@Override
+		public TokenFactory getTokenFactory() {
+			return tokenFactory;
+		}
+
+		@Override
+		public void setTokenFactory(TokenFactory tokenFactory) {
+			this.tokenFactory = tokenFactory;
+		}
+	}
+}
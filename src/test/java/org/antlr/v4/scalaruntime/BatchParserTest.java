@@ -0,0 +1,121 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.junit.Test;
+
+public class BatchParserTest {
+
+	private static final int PARALLELISM = 2;
+
+	@Test
+	public void keepsRecognizersBetweenBatches() {
+		final Counting recognizers = new Counting(Corpus.CSV);
+		final ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+		try {
+			final BatchParser<String> batch = new BatchParser<String>(pool, recognizers);
+			for (int i = 0; i < 5; i++) {
+				assertResults(Corpus.CSV, batch.parseAll(inputs(Corpus.CSV, 40)));
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		// the pool threads, and the calling thread if it helped with a batch
+		assertTrue(recognizers.lexers + " lexers", recognizers.lexers.get() <= PARALLELISM + 1);
+	}
+
+	@Test
+	public void parsesOnOwnPool() {
+		for (Corpus corpus : Corpus.values()) {
+			assertResults(corpus, BatchParser.parseAll(inputs(corpus, 9), PARALLELISM, new Counting(corpus)));
+		}
+	}
+
+	@Test
+	public void collectsSyntaxErrorsPerInput() {
+		final List<CharStream> inputs = new ArrayList<CharStream>();
+		inputs.add(new ANTLRInputStream("{\"a\": 1}"));
+		inputs.add(new ANTLRInputStream("{\"a\": 1 \"b\": }"));
+		inputs.add(new ANTLRInputStream("[1, 2]"));
+
+		final List<BatchParser.Result<String>> results = BatchParser.parseAll(inputs, PARALLELISM,
+				new Counting(Corpus.JSON));
+		assertFalse(results.get(0).hasSyntaxErrors());
+		assertTrue(results.get(1).hasSyntaxErrors());
+		assertEquals(parse(Corpus.JSON, "{\"a\": 1 \"b\": }"), results.get(1).getTree());
+		assertFalse(results.get(2).hasSyntaxErrors());
+	}
+
+	private static void assertResults(Corpus corpus, List<BatchParser.Result<String>> results) {
+		final String expected = parse(corpus, corpus.input());
+		for (BatchParser.Result<String> result : results) {
+			assertFalse(corpus.name(), result.hasSyntaxErrors());
+			assertEquals(corpus.name(), expected, result.getTree());
+		}
+	}
+
+	private static List<CharStream> inputs(Corpus corpus, int count) {
+		final List<CharStream> inputs = new ArrayList<CharStream>();
+		for (int i = 0; i < count; i++) {
+			inputs.add(new ANTLRInputStream(corpus.input()));
+		}
+		return inputs;
+	}
+
+	private static String parse(Corpus corpus, String input) {
+		final Parser parser = corpus.newParser(new CommonTokenStream(corpus.newLexer(input)));
+		parser.removeErrorListeners();
+		return corpus.parse(parser).toStringTree(parser);
+	}
+
+	/** Parses with a corpus grammar into the tree's text and counts the lexers it creates. */
+	private static final class Counting implements BatchParser.Recognizers<String> {
+
+		final Corpus corpus;
+
+		final AtomicInteger lexers = new AtomicInteger();
+
+		Counting(Corpus corpus) {
+			this.corpus = corpus;
+		}
+
+		@Override
+		public Lexer newLexer(CharStream input) {
+			lexers.incrementAndGet();
+			final Lexer lexer = corpus.newLexer("");
+			lexer.setInputStream(input);
+			return lexer;
+		}
+
+		@Override
+		public TokenStream newTokenStream(Lexer lexer) {
+			return new ArrayTokenStream(lexer);
+		}
+
+		@Override
+		public Parser newParser(TokenStream input) {
+			return corpus.newParser(input);
+		}
+
+		@Override
+		public String parse(Parser parser) {
+			final ParserRuleContext tree = corpus.parse(parser);
+			return tree.toStringTree(parser);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package org.antlr.v4.scalaruntime;
+
+import org.antlr.v4.codegen.benchmarks.grammars.CsvLexer;
+import org.antlr.v4.codegen.benchmarks.grammars.CsvListener;
+import org.antlr.v4.codegen.benchmarks.grammars.CsvParser;
+import org.antlr.v4.codegen.benchmarks.grammars.JsonLexer;
+import org.antlr.v4.codegen.benchmarks.grammars.JsonListener;
+import org.antlr.v4.codegen.benchmarks.grammars.JsonParser;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlLexer;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlListener;
+import org.antlr.v4.codegen.benchmarks.grammars.SqlParser;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+
+/**
+ * Java recognizers of the benchmark corpus grammars, generated by the ANTLR
+ * Maven plugin for the tests, and an input for each that spans several
+ * thousand tokens.
+ */
+enum Corpus {
+
+	JSON {
+		@Override
+		Lexer newLexer(String input) {
+			return new JsonLexer(new ANTLRInputStream(input));
+		}
+
+		@Override
+		Parser newParser(TokenStream input) {
+			return new JsonParser(input);
+		}
+
+		@Override
+		ParserRuleContext parse(Parser parser) {
+			return ((JsonParser) parser).json();
+		}
+
+		@Override
+		String serializedATN() {
+			return JsonParser._serializedATN;
+		}
+
+		@Override
+		Class<? extends ParseTreeListener> listenerType() {
+			return JsonListener.class;
+		}
+
+		@Override
+		String input() {
+			final StringBuilder builder = new StringBuilder("[\n");
+			for (int i = 0; i < 200; i++) {
+				if (i > 0) {
+					builder.append(",\n");
+				}
+				builder.append("{\"id\": ").append(i)
+						.append(", \"name\": \"item \\u0041").append(i).append('"')
+						.append(", \"price\": ").append(i).append(".25e-1")
+						.append(", \"tags\": [\"a\", \"b\", []]")
+						.append(", \"active\": ").append(i % 2 == 0)
+						.append(", \"parent\": null, \"meta\": {}}");
+			}
+			return builder.append("\n]\n").toString();
+		}
+	},
+
+	SQL {
+		@Override
+		Lexer newLexer(String input) {
+			return new SqlLexer(new ANTLRInputStream(input));
+		}
+
+		@Override
+		Parser newParser(TokenStream input) {
+			return new SqlParser(input);
+		}
+
+		@Override
+		ParserRuleContext parse(Parser parser) {
+			return ((SqlParser) parser).script();
+		}
+
+		@Override
+		String serializedATN() {
+			return SqlParser._serializedATN;
+		}
+
+		@Override
+		Class<? extends ParseTreeListener> listenerType() {
+			return SqlListener.class;
+		}
+
+		@Override
+		String input() {
+			final StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < 50; i++) {
+				builder.append("SELECT DISTINCT o.id, c.name AS customer, sum(o.total * 1.5) total\n")
+						.append("FROM orders o INNER JOIN customers c ON o.customer_id = c.id\n")
+						.append("LEFT OUTER JOIN regions r ON c.region = r.id\n")
+						.append("WHERE o.total >= ").append(i).append(" AND NOT c.name LIKE 'x''%' OR r.id IS NOT NULL\n")
+						.append("GROUP BY o.id, c.name HAVING count(o.id) > 1 ORDER BY total DESC LIMIT 10 OFFSET ")
+						.append(i).append(";\n");
+				builder.append("INSERT INTO audit.log (id, msg) VALUES (").append(i).append(", 'a'), (1 + 2, NULL);\n");
+				builder.append("UPDATE items SET price = price / 2, name = upper(name) WHERE id IN (1, 2, ").append(i)
+						.append(");\n");
+				builder.append("DELETE FROM sessions WHERE expires < now() AND (TRUE OR FALSE);\n");
+			}
+			return builder.toString();
+		}
+	},
+
+	CSV {
+		@Override
+		Lexer newLexer(String input) {
+			return new CsvLexer(new ANTLRInputStream(input));
+		}
+
+		@Override
+		Parser newParser(TokenStream input) {
+			return new CsvParser(input);
+		}
+
+		@Override
+		ParserRuleContext parse(Parser parser) {
+			return ((CsvParser) parser).file();
+		}
+
+		@Override
+		String serializedATN() {
+			return CsvParser._serializedATN;
+		}
+
+		@Override
+		Class<? extends ParseTreeListener> listenerType() {
+			return CsvListener.class;
+		}
+
+		@Override
+		String input() {
+			final StringBuilder builder = new StringBuilder("id,name,price,note\n");
+			for (int i = 0; i < 500; i++) {
+				builder.append(i).append(",item ").append(i).append(",,")
+						.append(i % 2 == 0 ? "\"say \"\"hi\"\", bye\"" : "plain").append(i % 3 == 0 ? "\r\n" : "\n");
+			}
+			return builder.toString();
+		}
+	};
+
+	abstract Lexer newLexer(String input);
+
+	abstract Parser newParser(TokenStream input);
+
+	/** Parses with the start rule of the grammar. */
+	abstract ParserRuleContext parse(Parser parser);
+
+	abstract String serializedATN();
+
+	/** The listener interface generated for the grammar. */
+	abstract Class<? extends ParseTreeListener> listenerType();
+
+	abstract String input();
+
+	/** Deserializes a new, cold copy of the parser ATN. */
+	ATN newATN() {
+		return ATNSimulator.deserialize(serializedATN().toCharArray());
+	}
+}
@@ -0,0 +1,92 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.junit.Test;
+
+public class DFASnapshotTest {
+
+	@Test
+	public void restoresEveryStateTheParseNeeds() throws IOException {
+		for (Corpus corpus : Corpus.values()) {
+			final ATN learned = corpus.newATN();
+			parse(corpus, learned);
+			final int learnedStates = states(learned);
+
+			final ATN warmed = corpus.newATN();
+			assertTrue(corpus.name(), load(corpus, warmed, save(corpus, learned)));
+			final int warmedStates = states(warmed);
+			assertTrue(corpus.name() + " " + warmedStates + " < " + learnedStates, warmedStates >= learnedStates);
+
+			parse(corpus, warmed);
+			assertEquals(corpus.name() + " states added by the parse after loading", warmedStates, states(warmed));
+		}
+	}
+
+	@Test
+	public void rejectsSnapshotOfAnotherGrammar() throws IOException {
+		final ATN learned = Corpus.JSON.newATN();
+		parse(Corpus.JSON, learned);
+		final byte[] snapshot = save(Corpus.JSON, learned);
+
+		final ATN other = Corpus.CSV.newATN();
+		assertFalse(load(Corpus.CSV, other, snapshot));
+		assertEquals(0, states(other));
+	}
+
+	@Test
+	public void roundTripsEmptyDFA() throws IOException {
+		final ATN cold = Corpus.SQL.newATN();
+		final ATN warmed = Corpus.SQL.newATN();
+		assertTrue(load(Corpus.SQL, warmed, save(Corpus.SQL, cold)));
+		assertEquals(0, states(warmed));
+	}
+
+	private static void parse(Corpus corpus, ATN atn) {
+		final Parser parser = newParser(corpus, atn, new CommonTokenStream(corpus.newLexer(corpus.input())));
+		corpus.parse(parser);
+		assertEquals(corpus.name() + " syntax errors", 0, parser.getNumberOfSyntaxErrors());
+	}
+
+	private static byte[] save(Corpus corpus, ATN atn) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DFASnapshot.save(atn, corpus.serializedATN().toCharArray(), out);
+		return out.toByteArray();
+	}
+
+	private static boolean load(final Corpus corpus, final ATN atn, byte[] snapshot) throws IOException {
+		return DFASnapshot.load(corpus.serializedATN().toCharArray(), new DFASnapshot.ParserFactory() {
+			@Override
+			public Parser newParser(TokenStream input) {
+				return DFASnapshotTest.newParser(corpus, atn, input);
+			}
+		}, new ByteArrayInputStream(snapshot));
+	}
+
+	/** Creates a parser that predicts with {@code atn} instead of the shared one. */
+	private static Parser newParser(Corpus corpus, ATN atn, TokenStream input) {
+		final Parser parser = corpus.newParser(input);
+		parser.setInterpreter(new ParserATNSimulator(parser, atn));
+		return parser;
+	}
+
+	private static int states(ATN atn) {
+		int states = 0;
+		for (DFA dfa : atn.decisionToDFA) {
+			states += dfa.states.size();
+		}
+		return states;
+	}
+}
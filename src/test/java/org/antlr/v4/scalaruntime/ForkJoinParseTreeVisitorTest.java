@@ -0,0 +1,122 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.tree.AbstractParseTreeVisitor;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.Test;
+
+/**
+ * Visits the same trees with a {@link ForkJoinParseTreeVisitor} and with a
+ * sequential visitor that merges the same results, and compares them. The
+ * result lists the terminals in the order they were merged, so a task that
+ * merged its halves the wrong way round shows.
+ */
+public class ForkJoinParseTreeVisitorTest {
+
+	private static final int[] THRESHOLDS = { 1, 2, 7, 64, Integer.MAX_VALUE };
+
+	@Test
+	public void mergesLikeSequentialVisit() {
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			for (Corpus corpus : Corpus.values()) {
+				final ParseTree tree = parse(corpus, corpus.input());
+				final String expected = tree.accept(new Sequential());
+				for (int threshold : THRESHOLDS) {
+					assertEquals(corpus.name() + " threshold " + threshold, expected,
+							tree.accept(new Parallel(pool, threshold)));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void visitsErrorNodes() {
+		final ParseTree tree = parse(Corpus.JSON, "[{\"a\": 1 2}, , [1 2]]");
+		final String expected = tree.accept(new Sequential());
+		for (int threshold : THRESHOLDS) {
+			assertEquals("threshold " + threshold, expected, tree.accept(new Parallel(ForkJoinPool.commonPool(), threshold)));
+		}
+		assertTrue(expected, expected.contains("!"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsThresholdBelowOne() {
+		new Parallel(ForkJoinPool.commonPool(), 0);
+	}
+
+	private static ParseTree parse(Corpus corpus, String input) {
+		final Parser parser = corpus.newParser(new CommonTokenStream(corpus.newLexer(input)));
+		parser.removeErrorListeners();
+		return corpus.parse(parser);
+	}
+
+	private static String terminal(TerminalNode node) {
+		return node.getSymbol().getTokenIndex() + " ";
+	}
+
+	private static String error(ErrorNode node) {
+		return "!" + node.getSymbol().getTokenIndex() + " ";
+	}
+
+	/** Lists the terminals with a plain visit, merged with {@code aggregateResult}. */
+	private static final class Sequential extends AbstractParseTreeVisitor<String> {
+
+		@Override
+		protected String defaultResult() {
+			return "";
+		}
+
+		@Override
+		protected String aggregateResult(String aggregate, String nextResult) {
+			return aggregate + nextResult;
+		}
+
+		@Override
+		public String visitTerminal(TerminalNode node) {
+			return terminal(node);
+		}
+
+		@Override
+		public String visitErrorNode(ErrorNode node) {
+			return error(node);
+		}
+	}
+
+	private static final class Parallel extends ForkJoinParseTreeVisitor<String> {
+
+		Parallel(ForkJoinPool pool, int threshold) {
+			super(pool, threshold);
+		}
+
+		@Override
+		protected String defaultResult() {
+			return "";
+		}
+
+		@Override
+		protected String combine(String left, String right) {
+			return left + right;
+		}
+
+		@Override
+		public String visitTerminal(TerminalNode node) {
+			return terminal(node);
+		}
+
+		@Override
+		public String visitErrorNode(ErrorNode node) {
+			return error(node);
+		}
+	}
+}
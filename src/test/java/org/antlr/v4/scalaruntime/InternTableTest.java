@@ -0,0 +1,87 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class InternTableTest {
+
+	@Test
+	public void sharesEqualValues() {
+		final InternTable<String> table = new InternTable<String>();
+		final String first = new String("a");
+		final String second = new String("a");
+		assertNotSame(first, second);
+
+		assertSame(first, table.intern(first));
+		assertSame(first, table.intern(second));
+		assertSame(first, table.intern(new String("a")));
+		assertEquals("b", table.intern(new String("b")));
+		assertEquals(2, table.size());
+		assertNull(table.intern(null));
+	}
+
+	@Test
+	public void collectsDroppedValues() throws InterruptedException {
+		final InternTable<String> table = new InternTable<String>();
+		final String kept = table.intern(new String("kept"));
+		for (int i = 0; i < 1000; i++) {
+			table.intern(new String("dropped " + i));
+		}
+
+		for (int attempt = 0; attempt < 100 && table.size() > 1; attempt++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertEquals(1, table.size());
+		assertSame(kept, table.intern(new String("kept")));
+
+		// a value equal to a collected one becomes the new canonical instance
+		final String again = new String("dropped 0");
+		assertSame(again, table.intern(again));
+		assertEquals(2, table.size());
+		assertSame(again, table.intern(new String("dropped 0")));
+	}
+
+	@Test
+	public void sharesValuesAcrossThreads() throws Exception {
+		final InternTable<String> table = new InternTable<String>();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<String[]>> futures = new ArrayList<Future<String[]>>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(new Callable<String[]>() {
+					@Override
+					public String[] call() {
+						final String[] result = new String[500];
+						for (int i = 0; i < result.length; i++) {
+							result[i] = table.intern(new String("value " + i));
+						}
+						return result;
+					}
+				}));
+			}
+
+			final String[] first = futures.get(0).get();
+			for (Future<String[]> future : futures) {
+				final String[] result = future.get();
+				for (int i = 0; i < result.length; i++) {
+					assertSame(first[i], result[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.junit.Test;
+
+/**
+ * Walks the same trees with {@link IterativeParseTreeWalker} and
+ * {@code ParseTreeWalker}, recording every call of a listener that
+ * implements the grammar's listener interface, and compares the calls.
+ */
+public class IterativeParseTreeWalkerTest {
+
+	@Test
+	public void callsListenerLikeParseTreeWalker() {
+		for (Corpus corpus : Corpus.values()) {
+			assertSameEvents(corpus, corpus.input());
+		}
+	}
+
+	@Test
+	public void visitsErrorNodes() {
+		// the error strategy consumes the doubled commas and the second value into error nodes
+		final List<String> events = assertSameEvents(Corpus.JSON, "[{\"a\": 1 2}, , [1 2]]");
+		boolean errorNode = false;
+		for (String event : events) {
+			errorNode |= event.startsWith("visitErrorNode");
+		}
+		assertTrue(events.toString(), errorNode);
+	}
+
+	@Test
+	public void walksDeepTree() {
+		// deeper than the initial stack of the walker
+		final StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			input.append('[');
+		}
+		input.append('1');
+		for (int i = 0; i < 300; i++) {
+			input.append(']');
+		}
+		assertSameEvents(Corpus.JSON, input.toString());
+	}
+
+	@Test
+	public void walksSingleTerminal() {
+		ParseTree tree = parse(Corpus.CSV, "a\n");
+		while (tree.getChildCount() > 0) {
+			tree = tree.getChild(0);
+		}
+		final List<String> expected = new ArrayList<String>();
+		ParseTreeWalker.DEFAULT.walk(recorder(Corpus.CSV, expected), tree);
+		final List<String> events = new ArrayList<String>();
+		new IterativeParseTreeWalker<ParseTreeListener>().walk(recorder(Corpus.CSV, events), tree);
+		assertEquals(expected, events);
+		assertEquals(1, events.size());
+	}
+
+	private static List<String> assertSameEvents(Corpus corpus, String input) {
+		final ParseTree tree = parse(corpus, input);
+		final List<String> expected = new ArrayList<String>();
+		ParseTreeWalker.DEFAULT.walk(recorder(corpus, expected), tree);
+		final List<String> events = new ArrayList<String>();
+		new IterativeParseTreeWalker<ParseTreeListener>().walk(recorder(corpus, events), tree);
+
+		assertEquals(corpus.name(), expected.size(), events.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(corpus.name() + " event " + i, expected.get(i), events.get(i));
+		}
+		return events;
+	}
+
+	private static ParseTree parse(Corpus corpus, String input) {
+		final Parser parser = corpus.newParser(new CommonTokenStream(corpus.newLexer(input)));
+		parser.removeErrorListeners();
+		return corpus.parse(parser);
+	}
+
+	/** Returns a listener of the grammar that adds each call and the node it got to {@code events}. */
+	private static ParseTreeListener recorder(Corpus corpus, final List<String> events) {
+		final Class<? extends ParseTreeListener> type = corpus.listenerType();
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+				if (method.getDeclaringClass() == Object.class) {
+					return method.invoke(this, args);
+				}
+
+				final Object node = args[0];
+				final String at = node instanceof RuleContext ? ((RuleContext) node).getSourceInterval().toString()
+						: ((ParseTree) node).getText();
+				events.add(method.getName() + " " + node.getClass().getSimpleName() + " " + at);
+				return null;
+			}
+		}));
+	}
+}
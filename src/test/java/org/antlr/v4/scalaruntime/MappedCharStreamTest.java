@@ -0,0 +1,240 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks {@link MappedCharStream} against an {@link ANTLRInputStream} over
+ * the string the file should decode to.
+ */
+public class MappedCharStreamTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final String REPLACEMENT = "\ufffd";
+
+	/** Code points of one to four UTF-8 bytes, up to the largest. */
+	private static final String[] VALID = { "a", "Z", "0", " ", "\n", "\u00e9", "\u00df", "\u0416", "\u20ac",
+			"\u4e2d", "\uffef", new String(Character.toChars(0x1F600)), new String(Character.toChars(0x1D11E)),
+			new String(Character.toChars(Character.MAX_CODE_POINT)) };
+
+	/** Malformed byte sequences, each of which must be followed by a byte that is not a continuation. */
+	private static final int[][] MALFORMED = {
+			// invalid lead bytes and a lone continuation
+			{ 0xFF }, { 0xC0 }, { 0xF8 }, { 0x80 },
+			// truncated sequences
+			{ 0xC3 }, { 0xE2, 0x82 }, { 0xF0, 0x9F, 0x98 },
+			// an encoded surrogate, an overlong encoding and a code point above U+10FFFF
+			{ 0xED, 0xA0, 0x80 }, { 0xE0, 0x80, 0xAF }, { 0xF4, 0x90, 0x80, 0x80 } };
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void decodesEveryWidth() throws IOException {
+		final StringBuilder text = new StringBuilder();
+		for (String s : VALID) {
+			text.append(s);
+		}
+		assertSameStream(text.toString(), stream(text.toString().getBytes(UTF8)));
+	}
+
+	@Test
+	public void replacesEveryMalformedByte() throws IOException {
+		final Content content = new Content();
+		for (int[] bytes : MALFORMED) {
+			content.malformed(bytes);
+			content.valid("x");
+		}
+
+		assertSameStream(content.text(), stream(content.bytes()));
+	}
+
+	@Test
+	public void replacesTruncatedSequenceAtEndOfFile() throws IOException {
+		final Content content = new Content();
+		content.valid("ab");
+		content.malformed(new int[] { 0xF0, 0x9F, 0x98 });
+		assertSameStream(content.text(), stream(content.bytes()));
+	}
+
+	@Test
+	public void checkpointsSplitSurrogatePairs() throws IOException {
+		// every checkpoint falls between the two chars of a supplementary code point
+		final StringBuilder text = new StringBuilder();
+		final String emoji = new String(Character.toChars(0x1F600));
+		for (int i = 0; i < 8; i++) {
+			while ((text.length() & 1023) != 1023) {
+				text.append(i % 2 == 0 ? "a" : "\u20ac");
+			}
+			text.append(emoji);
+		}
+
+		final MappedCharStream stream = stream(text.toString().getBytes(UTF8));
+		final ANTLRInputStream expected = new ANTLRInputStream(text.toString());
+		for (int i = text.length() - 1; i >= 0; i -= 1024) {
+			seekBoth(expected, stream, i);
+		}
+		seekBoth(expected, stream, text.length() - 1);
+		for (int i = text.length() - 1; i >= 0; i -= 1023) {
+			seekBoth(expected, stream, i);
+		}
+		assertSameStream(text.toString(), stream);
+	}
+
+	@Test
+	public void seeksAndReadsTextAnywhere() throws IOException {
+		final Random random = new Random(12);
+		final Content content = new Content();
+		while (content.text.length() < 10000) {
+			if (random.nextInt(10) == 0) {
+				content.malformed(MALFORMED[random.nextInt(MALFORMED.length)]);
+			}
+			content.valid(VALID[random.nextInt(VALID.length)]);
+		}
+
+		final String text = content.text();
+		final MappedCharStream stream = stream(content.bytes());
+		final ANTLRInputStream expected = new ANTLRInputStream(text);
+		for (int step = 0; step < 20000; step++) {
+			switch (random.nextInt(6)) {
+			case 0:
+				// far, usually past the last checkpoint reached
+				seekBoth(expected, stream, random.nextInt(text.length()));
+				break;
+			case 1:
+				// a few characters back, as the lexer does after a longer match failed
+				seekBoth(expected, stream, Math.max(0, stream.index() - 1 - random.nextInt(8)));
+				break;
+			case 2:
+				final int a = random.nextInt(text.length());
+				final int b = a + random.nextInt(40) - 1;
+				assertEquals("getText(" + a + ".." + b + ")", expected.getText(Interval.of(a, b)),
+						stream.getText(Interval.of(a, b)));
+				break;
+			case 3:
+				final int k = random.nextInt(11) - 5;
+				if (k != 0) {
+					assertEquals("LA(" + k + ") at " + stream.index(), expected.LA(k), stream.LA(k));
+				}
+				break;
+			default:
+				if (expected.LA(1) != IntStream.EOF) {
+					expected.consume();
+					stream.consume();
+				}
+				break;
+			}
+
+			assertEquals(expected.index(), stream.index());
+			assertEquals("LA(1) at " + stream.index(), expected.LA(1), stream.LA(1));
+		}
+
+		assertEquals(text.length(), stream.size());
+		assertSameStream(text, stream(content.bytes()));
+	}
+
+	@Test
+	public void readsSingleByteCharsets() throws IOException {
+		final byte[] bytes = new byte[256];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+
+		final File file = folder.newFile();
+		Files.write(file.toPath(), bytes);
+		final MappedCharStream stream = new MappedCharStream(file, Charset.forName("ISO-8859-1"));
+		assertSameStream(new String(bytes, "ISO-8859-1"), stream);
+	}
+
+	@Test
+	public void seeksPastEndToEndOfFile() throws IOException {
+		// ANTLRInputStream ignores such a seek, so this is not compared
+		final MappedCharStream stream = stream("ab\u20ac".getBytes(UTF8));
+		stream.seek(300);
+		assertEquals(3, stream.index());
+		assertEquals(IntStream.EOF, stream.LA(1));
+		assertEquals("\u20ac", stream.getText(Interval.of(2, 300)));
+		stream.seek(1);
+		assertEquals('b', stream.LA(1));
+	}
+
+	@Test
+	public void readsEmptyFile() throws IOException {
+		assertSameStream("", stream(new byte[0]));
+	}
+
+	/** Walks both streams from the start and compares every character, then the text. */
+	private static void assertSameStream(String text, CharStream stream) {
+		final ANTLRInputStream expected = new ANTLRInputStream(text);
+		seekBoth(expected, stream, 0);
+		while (expected.LA(1) != IntStream.EOF) {
+			assertEquals("LA(1) at " + expected.index(), expected.LA(1), stream.LA(1));
+			assertEquals("LA(-1) at " + expected.index(), expected.LA(-1), stream.LA(-1));
+			expected.consume();
+			stream.consume();
+			assertEquals(expected.index(), stream.index());
+		}
+
+		assertEquals(IntStream.EOF, stream.LA(1));
+		assertEquals(text.length(), stream.size());
+		assertEquals(text, stream.getText(Interval.of(0, text.length() - 1)));
+	}
+
+	private static void seekBoth(ANTLRInputStream expected, CharStream stream, int index) {
+		expected.seek(index);
+		stream.seek(index);
+		assertEquals("seek(" + index + ")", expected.index(), stream.index());
+		assertEquals("LA(1) after seek(" + index + ")", expected.LA(1), stream.LA(1));
+	}
+
+	private MappedCharStream stream(byte[] bytes) throws IOException {
+		final File file = folder.newFile();
+		Files.write(file.toPath(), bytes);
+		return new MappedCharStream(file);
+	}
+
+	/** Bytes of a file and the text it decodes to, built piece by piece. */
+	private static final class Content {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private final StringBuilder text = new StringBuilder();
+
+		void valid(String s) {
+			final byte[] encoded = s.getBytes(UTF8);
+			bytes.write(encoded, 0, encoded.length);
+			text.append(s);
+		}
+
+		/** Each byte of a malformed sequence decodes to a replacement of its own. */
+		void malformed(int[] sequence) {
+			for (int b : sequence) {
+				bytes.write(b);
+				text.append(REPLACEMENT);
+			}
+		}
+
+		byte[] bytes() {
+			return bytes.toByteArray();
+		}
+
+		String text() {
+			return text.toString();
+		}
+	}
+}
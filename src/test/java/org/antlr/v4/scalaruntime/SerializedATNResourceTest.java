@@ -0,0 +1,89 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
+import org.junit.Test;
+
+/**
+ * Writes the serialized ATNs of the corpus grammars with
+ * {@link SerializedATNResource} and reads them back, through a channel and
+ * through the classpath as a generated recognizer does.
+ */
+public class SerializedATNResourceTest {
+
+	@Test
+	public void roundTripsThroughChannel() throws IOException {
+		for (Corpus corpus : Corpus.values()) {
+			final char[] data = corpus.serializedATN().toCharArray();
+			assertArrayEquals(corpus.name(), data, SerializedATNResource.read(Channels.newChannel(
+					new ByteArrayInputStream(write(data)))));
+		}
+	}
+
+	@Test
+	public void loadsNextToOwner() throws IOException, URISyntaxException {
+		// the test classes directory is on the classpath, so write next to this class
+		final File directory = new File(SerializedATNResourceTest.class.getResource(
+				SerializedATNResourceTest.class.getSimpleName() + ".class").toURI()).getParentFile();
+		for (Corpus corpus : Corpus.values()) {
+			final char[] data = corpus.serializedATN().toCharArray();
+			final File file = new File(directory, "SerializedATNResourceTest" + corpus.name() + ".atn");
+			final FileChannel channel = new FileOutputStream(file).getChannel();
+			try {
+				SerializedATNResource.write(data, channel);
+			} finally {
+				channel.close();
+			}
+
+			try {
+				final char[] loaded = SerializedATNResource.load(SerializedATNResourceTest.class, file.getName());
+				assertArrayEquals(corpus.name(), data, loaded);
+
+				final ATN atn = ATNSimulator.deserialize(loaded);
+				assertEquals(corpus.name(), corpus.newATN().states.size(), atn.states.size());
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedData() {
+		final byte[] bytes = write(Corpus.CSV.serializedATN().toCharArray());
+		try {
+			SerializedATNResource.read(Channels.newChannel(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1))));
+			fail("read a truncated resource");
+		} catch (IOException e) {
+			assertEquals("Truncated serialized ATN resource", e.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void failsOnMissingResource() {
+		SerializedATNResource.load(SerializedATNResourceTest.class, "Missing.atn");
+	}
+
+	private static byte[] write(char[] data) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			SerializedATNResource.write(data, Channels.newChannel(out));
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		return out.toByteArray();
+	}
+}
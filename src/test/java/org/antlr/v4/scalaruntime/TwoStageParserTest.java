@@ -0,0 +1,96 @@
+package org.antlr.v4.scalaruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.junit.Test;
+
+/**
+ * Parses the same input with a {@link TwoStageParser} and with a plain LL
+ * parse, and compares the trees and the syntax errors the parser's
+ * listeners see.
+ */
+public class TwoStageParserTest {
+
+	@Test
+	public void buildsSameTreeInOneStage() {
+		final TwoStageParser twoStage = new TwoStageParser();
+		for (Corpus corpus : Corpus.values()) {
+			assertSameParse(twoStage, corpus, corpus.input());
+		}
+		assertEquals(Corpus.values().length, twoStage.getParses());
+		assertEquals(0, twoStage.getFallbacks());
+		assertEquals(0, twoStage.getFailures());
+	}
+
+	@Test
+	public void fallsBackToLLOnSyntaxErrors() {
+		final String[] inputs = { "[{\"a\": 1 \"b\": }, , [1 2]]", "SELECT FROM WHERE a = = 1; DELETE sessions;",
+				"a,\"b\nc,d\n\"" };
+		final TwoStageParser twoStage = new TwoStageParser();
+		for (int i = 0; i < inputs.length; i++) {
+			assertSameParse(twoStage, Corpus.values()[i], inputs[i]);
+		}
+		assertEquals(inputs.length, twoStage.getParses());
+		assertEquals(inputs.length, twoStage.getFallbacks());
+		assertEquals(inputs.length, twoStage.getFailures());
+	}
+
+	private static void assertSameParse(TwoStageParser twoStage, final Corpus corpus, String input) {
+		final Parser expected = newParser(corpus, input);
+		expected.getInterpreter().setPredictionMode(PredictionMode.LL);
+		final ParserRuleContext expectedTree = corpus.parse(expected);
+		final List<String> expectedErrors = errors(expected);
+
+		final Parser parser = newParser(corpus, input);
+		final PredictionMode mode = parser.getInterpreter().getPredictionMode();
+		final ANTLRErrorStrategy errorHandler = parser.getErrorHandler();
+		final ParserRuleContext tree = twoStage.parse(parser, new TwoStageParser.StartRule<ParserRuleContext>() {
+			@Override
+			public ParserRuleContext parse(Parser parser) {
+				return corpus.parse(parser);
+			}
+		});
+
+		assertEquals(corpus.name(), expectedTree.toStringTree(expected), tree.toStringTree(parser));
+		assertEquals(corpus.name(), expected.getNumberOfSyntaxErrors(), parser.getNumberOfSyntaxErrors());
+		assertEquals(corpus.name(), expectedErrors, errors(parser));
+		assertSame(corpus.name(), mode, parser.getInterpreter().getPredictionMode());
+		assertSame(corpus.name(), errorHandler, parser.getErrorHandler());
+	}
+
+	private static Parser newParser(Corpus corpus, String input) {
+		final Parser parser = corpus.newParser(new CommonTokenStream(corpus.newLexer(input)));
+		parser.removeErrorListeners();
+		parser.addErrorListener(new Recorder());
+		return parser;
+	}
+
+	private static List<String> errors(Parser parser) {
+		return ((Recorder) parser.getErrorListeners().get(0)).errors;
+	}
+
+	/** Records the syntax errors reported to the parser's listeners. */
+	private static final class Recorder extends BaseErrorListener {
+
+		final List<String> errors = new ArrayList<String>();
+
+		@Override
+		public <T extends Token> void syntaxError(Recognizer<T, ?> recognizer, T offendingSymbol, int line,
+				int charPositionInLine, String msg, RecognitionException e) {
+			errors.add(line + ":" + charPositionInLine + " " + msg);
+		}
+	}
+}